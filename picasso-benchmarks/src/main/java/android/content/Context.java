@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content;
+
+/**
+ * Pure JVM stand-in for the framework class. There are no system services and no permissions
+ * are granted, so Picasso skips the features which need them.
+ */
+public class Context {
+  public static final String CONNECTIVITY_SERVICE = "connectivity";
+
+  private final ContentResolver contentResolver = new ContentResolver();
+
+  public Context getApplicationContext() {
+    return this;
+  }
+
+  public ContentResolver getContentResolver() {
+    return contentResolver;
+  }
+
+  public Object getSystemService(String name) {
+    return null;
+  }
+
+  public int checkCallingOrSelfPermission(String permission) {
+    return -1;
+  }
+
+  public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+    return null;
+  }
+
+  public void unregisterReceiver(BroadcastReceiver receiver) {
+  }
+
+  public void registerComponentCallbacks(ComponentCallbacks callback) {
+  }
+
+  public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.graphics;
+
+/** Pure JVM stand-in for the framework class. Only the dimensions are kept, not the pixels. */
+public final class Bitmap {
+  public enum Config {
+    ALPHA_8(1), RGB_565(2), ARGB_4444(2), ARGB_8888(4);
+
+    final int bytesPerPixel;
+
+    Config(int bytesPerPixel) {
+      this.bytesPerPixel = bytesPerPixel;
+    }
+  }
+
+  private final int width;
+  private final int height;
+  private final Config config;
+  private final boolean mutable;
+  private boolean recycled;
+
+  private Bitmap(int width, int height, Config config, boolean mutable) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("width and height must be > 0");
+    }
+    this.width = width;
+    this.height = height;
+    this.config = config;
+    this.mutable = mutable;
+  }
+
+  public static Bitmap createBitmap(int width, int height, Config config) {
+    return new Bitmap(width, height, config, true);
+  }
+
+  public static Bitmap createBitmap(Bitmap source, int x, int y, int width, int height) {
+    if (x == 0 && y == 0 && width == source.width && height == source.height
+        && !source.mutable) {
+      return source;
+    }
+    return new Bitmap(width, height, source.config, false);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getRowBytes() {
+    return width * config.bytesPerPixel;
+  }
+
+  public int getByteCount() {
+    return getRowBytes() * height;
+  }
+
+  public Config getConfig() {
+    return config;
+  }
+
+  public boolean isMutable() {
+    return mutable;
+  }
+
+  public boolean isRecycled() {
+    return recycled;
+  }
+
+  public void recycle() {
+    recycled = true;
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.graphics;
+
+/** Pure JVM stand-in for the framework class. Nothing is decoded. */
+public class BitmapFactory {
+  public static class Options {
+    public Bitmap inBitmap;
+    public int inDensity;
+    public boolean inJustDecodeBounds;
+    public boolean inMutable;
+    public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+    public int inSampleSize;
+    public boolean inScaled = true;
+    public int inTargetDensity;
+    public int outWidth;
+    public int outHeight;
+    public String outMimeType;
+  }
+}
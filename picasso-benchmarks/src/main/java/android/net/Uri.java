@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.net;
+
+import java.net.URI;
+
+/** Pure JVM stand-in for the framework class, backed by {@link URI}. */
+public final class Uri {
+  private final String uriString;
+  private final URI uri;
+
+  private Uri(String uriString) {
+    this.uriString = uriString;
+    this.uri = URI.create(uriString);
+  }
+
+  public static Uri parse(String uriString) {
+    return new Uri(uriString);
+  }
+
+  public String getScheme() {
+    return uri.getScheme();
+  }
+
+  public String getHost() {
+    return uri.getHost();
+  }
+
+  public String getPath() {
+    return uri.getPath();
+  }
+
+  @Override public boolean equals(Object o) {
+    return o instanceof Uri && uriString.equals(((Uri) o).uriString);
+  }
+
+  @Override public int hashCode() {
+    return uriString.hashCode();
+  }
+
+  @Override public String toString() {
+    return uriString;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/** Pure JVM stand-in for the framework class, with just what Picasso uses. */
+public class Handler {
+  private final Looper looper;
+
+  public Handler() {
+    this(Looper.myLooper());
+  }
+
+  public Handler(Looper looper) {
+    if (looper == null) {
+      throw new RuntimeException("Can't create handler without a Looper.");
+    }
+    this.looper = looper;
+  }
+
+  public void handleMessage(Message msg) {
+  }
+
+  public void dispatchMessage(Message msg) {
+    if (msg.callback != null) {
+      msg.callback.run();
+    } else {
+      handleMessage(msg);
+    }
+  }
+
+  public final Looper getLooper() {
+    return looper;
+  }
+
+  public final Message obtainMessage(int what) {
+    return obtainMessage(what, 0, 0, null);
+  }
+
+  public final Message obtainMessage(int what, Object obj) {
+    return obtainMessage(what, 0, 0, obj);
+  }
+
+  public final Message obtainMessage(int what, int arg1, int arg2) {
+    return obtainMessage(what, arg1, arg2, null);
+  }
+
+  public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+    Message message = Message.obtain();
+    message.target = this;
+    message.what = what;
+    message.arg1 = arg1;
+    message.arg2 = arg2;
+    message.obj = obj;
+    return message;
+  }
+
+  public final boolean post(Runnable r) {
+    return postDelayed(r, 0);
+  }
+
+  public final boolean postDelayed(Runnable r, long delayMillis) {
+    Message message = Message.obtain();
+    message.callback = r;
+    return sendMessageDelayed(message, delayMillis);
+  }
+
+  public final boolean sendMessage(Message msg) {
+    return sendMessageDelayed(msg, 0);
+  }
+
+  public final boolean sendEmptyMessage(int what) {
+    return sendEmptyMessageDelayed(what, 0);
+  }
+
+  public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+    return sendMessageDelayed(obtainMessage(what), delayMillis);
+  }
+
+  public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+    return sendMessageAtTime(msg, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+  }
+
+  public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+    msg.target = this;
+    return looper.queue.enqueue(msg, uptimeMillis);
+  }
+
+  public final boolean hasMessages(int what) {
+    return looper.queue.hasMessages(this, what);
+  }
+
+  public final void removeMessages(int what) {
+    looper.queue.removeMessages(this, what);
+  }
+}
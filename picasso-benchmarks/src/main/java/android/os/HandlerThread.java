@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/** Pure JVM stand-in for the framework class: a thread which loops its own {@link Looper}. */
+public class HandlerThread extends Thread {
+  private final int priority;
+  private Looper looper;
+
+  public HandlerThread(String name) {
+    this(name, Process.THREAD_PRIORITY_DEFAULT);
+  }
+
+  public HandlerThread(String name, int priority) {
+    super(name);
+    this.priority = priority;
+  }
+
+  protected void onLooperPrepared() {
+  }
+
+  @Override public void run() {
+    Process.setThreadPriority(priority);
+    Looper.prepare();
+    synchronized (this) {
+      looper = Looper.myLooper();
+      notifyAll();
+    }
+    onLooperPrepared();
+    Looper.loop();
+  }
+
+  public Looper getLooper() {
+    if (!isAlive()) {
+      return null;
+    }
+    synchronized (this) {
+      while (isAlive() && looper == null) {
+        try {
+          wait();
+        } catch (InterruptedException ignored) {
+        }
+      }
+    }
+    return looper;
+  }
+
+  public boolean quit() {
+    Looper looper = getLooper();
+    if (looper == null) {
+      return false;
+    }
+    looper.quit();
+    return true;
+  }
+}
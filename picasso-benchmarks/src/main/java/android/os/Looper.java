@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/**
+ * Pure JVM stand-in for the framework class. Nothing loops the main looper, so messages sent to
+ * it are never delivered.
+ */
+public final class Looper {
+  private static final ThreadLocal<Looper> LOOPERS = new ThreadLocal<Looper>();
+  private static final Looper MAIN = new Looper(null);
+
+  final MessageQueue queue = new MessageQueue();
+  private final Thread thread;
+
+  private Looper(Thread thread) {
+    this.thread = thread;
+  }
+
+  public static void prepare() {
+    if (LOOPERS.get() != null) {
+      throw new RuntimeException("Only one Looper may be created per thread");
+    }
+    LOOPERS.set(new Looper(Thread.currentThread()));
+  }
+
+  public static Looper myLooper() {
+    return LOOPERS.get();
+  }
+
+  public static Looper getMainLooper() {
+    return MAIN;
+  }
+
+  public static void loop() {
+    Looper looper = myLooper();
+    if (looper == null) {
+      throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+    }
+    Message message;
+    while ((message = looper.queue.next()) != null) {
+      message.target.dispatchMessage(message);
+    }
+  }
+
+  public Thread getThread() {
+    return thread;
+  }
+
+  public void quit() {
+    queue.quit();
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/** Pure JVM stand-in for the framework class, with just what Picasso uses. */
+public final class Message {
+  public int what;
+  public int arg1;
+  public int arg2;
+  public Object obj;
+
+  Handler target;
+  Runnable callback;
+  long when;
+
+  public static Message obtain() {
+    return new Message();
+  }
+}
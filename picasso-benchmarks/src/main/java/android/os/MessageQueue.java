@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/** Pure JVM stand-in for the framework class: messages ordered by time, then by arrival. */
+public final class MessageQueue {
+  private final LinkedList<Message> messages = new LinkedList<Message>();
+  private boolean quitting;
+
+  synchronized boolean enqueue(Message message, long when) {
+    if (quitting) {
+      return false;
+    }
+    message.when = when;
+    ListIterator<Message> it = messages.listIterator(messages.size());
+    while (it.hasPrevious()) {
+      if (it.previous().when <= when) {
+        it.next();
+        break;
+      }
+    }
+    it.add(message);
+    notifyAll();
+    return true;
+  }
+
+  /** Blocks until the next message is due, or returns {@code null} once quit. */
+  synchronized Message next() {
+    while (!quitting) {
+      if (messages.isEmpty()) {
+        waitFor(0);
+        continue;
+      }
+      long delay = messages.getFirst().when - SystemClock.uptimeMillis();
+      if (delay <= 0) {
+        return messages.removeFirst();
+      }
+      waitFor(delay);
+    }
+    return null;
+  }
+
+  synchronized boolean hasMessages(Handler handler, int what) {
+    for (Message message : messages) {
+      if (message.target == handler && message.what == what && message.callback == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  synchronized void removeMessages(Handler handler, int what) {
+    for (Iterator<Message> it = messages.iterator(); it.hasNext(); ) {
+      Message message = it.next();
+      if (message.target == handler && message.what == what && message.callback == null) {
+        it.remove();
+      }
+    }
+  }
+
+  synchronized void quit() {
+    quitting = true;
+    messages.clear();
+    notifyAll();
+  }
+
+  private void waitFor(long millis) {
+    try {
+      wait(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      quitting = true;
+    }
+  }
+}
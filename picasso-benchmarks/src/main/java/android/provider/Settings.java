@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.provider;
+
+import android.content.ContentResolver;
+
+/** Pure JVM stand-in for the framework class. Every setting has its default value. */
+public final class Settings {
+  public static final class System {
+    public static final String AIRPLANE_MODE_ON = "airplane_mode_on";
+
+    public static int getInt(ContentResolver resolver, String name, int defaultValue) {
+      return defaultValue;
+    }
+  }
+}
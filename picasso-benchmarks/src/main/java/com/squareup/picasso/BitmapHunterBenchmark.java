@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static android.graphics.Bitmap.Config.ARGB_8888;
+
+/**
+ * The bookkeeping {@link BitmapHunter} does around decoding and transforming. The stand-in
+ * bitmaps have no pixels, so only Picasso's own work is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitmapHunterBenchmark {
+  private final PicassoBitmapOptions options = new PicassoBitmapOptions();
+  private List<Transformation> sameBitmapTransformations;
+  private List<Transformation> newBitmapTransformations;
+
+  @Setup public void setUp() {
+    sameBitmapTransformations = new ArrayList<Transformation>(3);
+    newBitmapTransformations = new ArrayList<Transformation>(3);
+    for (int i = 0; i < 3; i++) {
+      sameBitmapTransformations.add(new SameBitmapTransformation());
+      newBitmapTransformations.add(new NewBitmapTransformation());
+    }
+  }
+
+  @Benchmark public int calculateInSampleSize() {
+    options.outWidth = 4000;
+    options.outHeight = 3000;
+    options.targetWidth = 320;
+    options.targetHeight = 240;
+    options.inJustDecodeBounds = true;
+    BitmapHunter.calculateInSampleSize(options);
+    return options.inSampleSize;
+  }
+
+  @Benchmark public Bitmap applySameBitmapTransformations() {
+    Bitmap source = Bitmap.createBitmap(320, 240, ARGB_8888);
+    return BitmapHunter.applyCustomTransformations(sameBitmapTransformations, source);
+  }
+
+  @Benchmark public Bitmap applyNewBitmapTransformations() {
+    Bitmap source = Bitmap.createBitmap(320, 240, ARGB_8888);
+    return BitmapHunter.applyCustomTransformations(newBitmapTransformations, source);
+  }
+
+  static final class SameBitmapTransformation implements Transformation {
+    @Override public Bitmap transform(Bitmap source) {
+      return source;
+    }
+
+    @Override public String key() {
+      return "same";
+    }
+  }
+
+  static final class NewBitmapTransformation implements Transformation {
+    @Override public Bitmap transform(Bitmap source) {
+      Bitmap result = Bitmap.createBitmap(source.getWidth(), source.getHeight(), ARGB_8888);
+      source.recycle();
+      return result;
+    }
+
+    @Override public String key() {
+      return "new";
+    }
+  }
+}
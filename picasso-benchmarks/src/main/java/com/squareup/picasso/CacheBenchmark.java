@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static android.graphics.Bitmap.Config.ALPHA_8;
+
+/**
+ * Compares {@link LruCache} and {@link ConcurrentLruCache}. The {@code contended} group has one
+ * thread reading the way the main thread does while three threads read and store the way hunters
+ * do. The cache holds half of the keys, so hunter stores keep trimming it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+  private static final int KEY_COUNT = 512;
+
+  @Param({ "LruCache", "ConcurrentLruCache" })
+  public String implementation;
+
+  final RequestKey[] keys = new RequestKey[KEY_COUNT];
+  private final Bitmap bitmap = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private Cache cache;
+
+  @Setup public void setUp() {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 100;
+    options.targetHeight = 100;
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = Utils.createKey(Uri.parse("http://example.com/" + i + ".png"), 0, options, null);
+    }
+    // A 1x1 ALPHA_8 bitmap is one byte, so the size is the number of entries.
+    int maxSize = KEY_COUNT / 2;
+    cache = "LruCache".equals(implementation) ? new LruCache(maxSize)
+        : new ConcurrentLruCache(maxSize);
+    for (int i = 0; i < maxSize; i++) {
+      cache.set(keys[i], bitmap);
+    }
+  }
+
+  /** Walks the keys with a stride so that threads touch different entries. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private static int nextSeed;
+    private final int stride;
+    private int index;
+
+    public Cursor() {
+      synchronized (Cursor.class) {
+        stride = 2 * nextSeed++ + 1;
+      }
+    }
+
+    int next() {
+      index = (index + stride) % KEY_COUNT;
+      return index;
+    }
+  }
+
+  @Benchmark public Bitmap get(Cursor cursor) {
+    return cache.get(keys[cursor.next()]);
+  }
+
+  @Benchmark public void setWithTrim(Cursor cursor) {
+    cache.set(keys[cursor.next()], bitmap);
+  }
+
+  @Benchmark @Group("contended") @GroupThreads(1)
+  public Bitmap mainThreadGet(Cursor cursor) {
+    return cache.get(keys[cursor.next()]);
+  }
+
+  @Benchmark @Group("contended") @GroupThreads(3)
+  public Bitmap hunterGetOrSet(Cursor cursor) {
+    RequestKey key = keys[cursor.next()];
+    Bitmap cached = cache.get(key);
+    if (cached == null) {
+      cache.set(key, bitmap);
+    }
+    return cached;
+  }
+}
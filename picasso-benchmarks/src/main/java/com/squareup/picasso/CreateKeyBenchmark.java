@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Builds the request keys which every {@code into()} call computes on the main thread. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateKeyBenchmark {
+  private Uri uri;
+  private PicassoBitmapOptions options;
+  private List<Transformation> transformations;
+
+  @Setup public void setUp() {
+    uri = Uri.parse("http://example.com/photos/2013/09/0123456789abcdef.jpg");
+
+    options = new PicassoBitmapOptions();
+    options.targetWidth = 320;
+    options.targetHeight = 240;
+    options.centerCrop = true;
+    options.targetRotation = 90;
+
+    transformations = new ArrayList<Transformation>(2);
+    transformations.add(new NamedTransformation("rounded(8)"));
+    transformations.add(new NamedTransformation("grayscale"));
+  }
+
+  @Benchmark public RequestKey uri() {
+    return Utils.createKey(uri, 0, null, null);
+  }
+
+  @Benchmark public RequestKey resource() {
+    return Utils.createKey(null, 0x7f020001, null, null);
+  }
+
+  @Benchmark public RequestKey resizedAndRotated() {
+    return Utils.createKey(uri, 0, options, null);
+  }
+
+  @Benchmark public RequestKey transformed() {
+    return Utils.createKey(uri, 0, options, transformations);
+  }
+
+  static final class NamedTransformation implements Transformation {
+    private final String key;
+
+    NamedTransformation(String key) {
+      this.key = key;
+    }
+
+    @Override public Bitmap transform(Bitmap source) {
+      return source;
+    }
+
+    @Override public String key() {
+      return key;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trips through the {@link Dispatcher} thread: each request is submitted, its hunter is
+ * handed to an executor which completes it at once, and the completion is batched. This is the
+ * per-request overhead Picasso adds on top of fetching and decoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+  private static final int BATCH = 64;
+
+  private Dispatcher dispatcher;
+  private final FetchRequest[] requests = new FetchRequest[BATCH];
+
+  @Setup public void setUp() {
+    Context context = new Context();
+    // Nothing loops the main thread here, so drop the batches instead of letting them pile up.
+    Handler mainThreadHandler = new Handler(Looper.getMainLooper()) {
+      @Override public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+        return true;
+      }
+    };
+    dispatcher = new Dispatcher(context, new CompletingExecutorService(), mainThreadHandler, null,
+        Cache.NONE);
+    Picasso picasso = new Picasso(context, dispatcher, Cache.NONE, null, null, null, null, null,
+        null, null, false, false, false);
+    for (int i = 0; i < BATCH; i++) {
+      Uri uri = Uri.parse("http://example.com/" + i + ".png");
+      RequestKey key = Utils.createKey(uri, 0, null, null);
+      requests[i] = new FetchRequest(picasso, uri, 0, null, null, false, key, null);
+    }
+  }
+
+  @TearDown public void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Benchmark @OperationsPerInvocation(BATCH)
+  public void submitAndComplete() throws InterruptedException {
+    for (FetchRequest request : requests) {
+      dispatcher.dispatchSubmit(request);
+    }
+    // Submits queue their completions behind this message, so wait for one more turn.
+    final CountDownLatch latch = new CountDownLatch(1);
+    dispatcher.handler.post(new Runnable() {
+      @Override public void run() {
+        dispatcher.handler.post(new Runnable() {
+          @Override public void run() {
+            latch.countDown();
+          }
+        });
+      }
+    });
+    latch.await();
+  }
+
+  /** Completes every hunter as soon as it is submitted, without fetching anything. */
+  final class CompletingExecutorService extends AbstractExecutorService {
+    private volatile boolean shutdown;
+
+    @Override public Future<?> submit(Runnable task) {
+      dispatcher.dispatchComplete((BitmapHunter) task);
+      return null;
+    }
+
+    @Override public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override public void shutdown() {
+      shutdown = true;
+    }
+
+    @Override public List<Runnable> shutdownNow() {
+      shutdown = true;
+      return Collections.emptyList();
+    }
+
+    @Override public boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override public boolean isTerminated() {
+      return shutdown;
+    }
+
+    @Override public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return true;
+    }
+  }
+}
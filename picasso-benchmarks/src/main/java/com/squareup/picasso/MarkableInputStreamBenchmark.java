@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a downloaded image the way {@link NetworkBitmapHunter} does: a bounds pass reads the
+ * header, the stream is reset, and the decode reads everything. The source does not support marks
+ * itself, like a network stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkableInputStreamBenchmark {
+  private static final int HEADER_SIZE = 1024; // Mirrors BitmapFactory.cpp value.
+
+  @Param({ "16384", "262144" })
+  public int size;
+
+  private byte[] data;
+  private final byte[] buffer = new byte[8192];
+
+  @Setup public void setUp() {
+    data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) i;
+    }
+  }
+
+  @Benchmark public long boundsPassThenDecode() throws IOException {
+    MarkableInputStream stream = new MarkableInputStream(newSource());
+    long mark = stream.savePosition(HEADER_SIZE);
+    // The bounds pass reads the header a few bytes at a time.
+    for (int i = 0; i < HEADER_SIZE / 16; i++) {
+      stream.read(buffer, 0, 16);
+    }
+    stream.reset(mark);
+    return readFully(stream);
+  }
+
+  @Benchmark public long singleByteReads() throws IOException {
+    MarkableInputStream stream = new MarkableInputStream(newSource());
+    long mark = stream.savePosition(HEADER_SIZE);
+    for (int i = 0; i < HEADER_SIZE; i++) {
+      stream.read();
+    }
+    stream.reset(mark);
+    long sum = 0;
+    for (int i = 0; i < HEADER_SIZE; i++) {
+      sum += stream.read();
+    }
+    return sum;
+  }
+
+  @Benchmark public long skipSegments() throws IOException {
+    MarkableInputStream stream = new MarkableInputStream(newSource());
+    long mark = stream.savePosition(HEADER_SIZE);
+    stream.skip(HEADER_SIZE / 2);
+    stream.reset(mark);
+    long total = 0;
+    long skipped;
+    // Skip over segments the way decoders skip metadata they do not need.
+    while ((skipped = stream.skip(4096)) > 0) {
+      total += skipped;
+      if (stream.read() == -1) {
+        break;
+      }
+    }
+    return total;
+  }
+
+  private InputStream newSource() {
+    return new FilterInputStream(new ByteArrayInputStream(data)) {
+      @Override public boolean markSupported() {
+        return false;
+      }
+    };
+  }
+
+  private long readFully(InputStream stream) throws IOException {
+    long total = 0;
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      total += read;
+    }
+    return total;
+  }
+}
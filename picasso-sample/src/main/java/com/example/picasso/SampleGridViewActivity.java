@@ -7,6 +7,8 @@ import android.os.Bundle;
 import android.view.Display;
 import android.view.WindowManager;
 import android.widget.GridView;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Prefetcher;
 
 public class SampleGridViewActivity extends PicassoSampleActivity {
   @Override protected void onCreate(Bundle savedInstanceState) {
@@ -14,10 +16,14 @@ public class SampleGridViewActivity extends PicassoSampleActivity {
     setContentView(R.layout.sample_gridview_activity);
 
     Point displaySize = getDisplaySize();
-    int size = displaySize.x / getResources().getInteger(R.integer.column_count);
+    int columnCount = getResources().getInteger(R.integer.column_count);
+    int size = displaySize.x / columnCount;
 
     GridView gv = (GridView) findViewById(R.id.grid_view);
-    gv.setAdapter(new SampleGridViewAdapter(this, size));
+    SampleGridViewAdapter adapter = new SampleGridViewAdapter(this, size);
+    gv.setAdapter(adapter);
+    // Warm the next two rows in the direction of scrolling.
+    gv.setOnScrollListener(new Prefetcher(Picasso.with(this), adapter.requests(), 2 * columnCount));
   }
 
   private Point getDisplaySize() {
@@ -5,6 +5,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestBuilder;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -34,21 +36,35 @@ final class SampleGridViewAdapter extends BaseAdapter {
       view = new SquaredImageView(context);
     }
 
-    // Get the image URL for the current position.
-    String url = getItem(position);
-
     // Trigger the download of the URL asynchronously into the image view.
-    Picasso.with(context) //
-        .load(url) //
+    request(position) //
         .placeholder(R.drawable.placeholder) //
         .error(R.drawable.error) //
-        .resize(size, size) //
-        .centerCrop() //
         .into(view);
 
     return view;
   }
 
+  /** The requests for the images of all positions, for prefetching. */
+  List<RequestBuilder> requests() {
+    return new AbstractList<RequestBuilder>() {
+      @Override public RequestBuilder get(int position) {
+        return request(position);
+      }
+
+      @Override public int size() {
+        return getCount();
+      }
+    };
+  }
+
+  private RequestBuilder request(int position) {
+    return Picasso.with(context) //
+        .load(getItem(position)) //
+        .resize(size, size) //
+        .centerCrop();
+  }
+
   @Override public int getCount() {
     return urls.size();
   }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+/**
+ * Sizes the network executor from the throughput it measures, with an additive increase,
+ * multiplicative decrease controller. At the end of each window in which hunters were left
+ * queued, one thread is added. If throughput then drops instead, the network is taken to be
+ * congested and a quarter of the threads are removed. Without a backlog more threads could not
+ * help, so the count holds. The count always stays within the configured bounds.
+ * <p>
+ * Throughput is compared in bytes per second when both windows fetched bytes of a known length,
+ * and in completed hunts per second otherwise.
+ */
+final class AdaptiveThreadCount {
+  static final long WINDOW_MILLIS = 2000;
+  /** How far throughput may fall after an increase before the network counts as congested. */
+  static final double CONGESTION_DROP = 0.1;
+
+  final int minThreads;
+  final int maxThreads;
+
+  private long windowStart;
+  private long completed;
+  private long bytes;
+  private boolean increased;
+  private double lastBytesPerSecond;
+  private double lastHuntsPerSecond;
+
+  int increases;
+  int decreases;
+  double bytesPerSecond;
+  double huntsPerSecond;
+
+  AdaptiveThreadCount(int minThreads, int maxThreads) {
+    if (minThreads < 1) {
+      throw new IllegalArgumentException("Minimum thread count must be positive.");
+    }
+    if (maxThreads < minThreads) {
+      throw new IllegalArgumentException("Maximum thread count must not be below the minimum.");
+    }
+    this.minThreads = minThreads;
+    this.maxThreads = maxThreads;
+  }
+
+  /** Starts measuring from {@code threadCount}, clamped into the bounds, which is returned. */
+  synchronized int restart(int threadCount, long now) {
+    windowStart = now;
+    completed = 0;
+    bytes = 0;
+    increased = false;
+    lastBytesPerSecond = 0;
+    lastHuntsPerSecond = 0;
+    return Math.max(minThreads, Math.min(maxThreads, threadCount));
+  }
+
+  /**
+   * Records a finished hunt which fetched {@code fetchedBytes}, or -1 if unknown. Returns the
+   * thread count for the next window when this one is over, or -1 while it is still running.
+   */
+  synchronized int record(long fetchedBytes, int threads, int queued, long now) {
+    completed++;
+    if (fetchedBytes > 0) {
+      bytes += fetchedBytes;
+    }
+    long elapsed = now - windowStart;
+    if (elapsed < WINDOW_MILLIS) {
+      return -1;
+    }
+
+    huntsPerSecond = completed * 1000.0 / elapsed;
+    bytesPerSecond = bytes * 1000.0 / elapsed;
+    boolean dropped = bytesPerSecond > 0 && lastBytesPerSecond > 0
+        ? bytesPerSecond < lastBytesPerSecond * (1 - CONGESTION_DROP)
+        : huntsPerSecond < lastHuntsPerSecond * (1 - CONGESTION_DROP);
+
+    int next = threads;
+    if (increased && dropped) {
+      next = Math.max(minThreads, threads - Math.max(1, threads / 4));
+      increased = false;
+    } else if (queued > 0 && threads < maxThreads) {
+      next = threads + 1;
+      increased = true;
+    } else {
+      increased = false;
+    }
+    if (next > threads) {
+      increases++;
+    } else if (next < threads) {
+      decreases++;
+    }
+
+    lastBytesPerSecond = bytesPerSecond;
+    lastHuntsPerSecond = huntsPerSecond;
+    windowStart = now;
+    completed = 0;
+    bytes = 0;
+    return next;
+  }
+}
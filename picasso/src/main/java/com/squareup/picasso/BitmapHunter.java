@@ -15,11 +15,24 @@
  */
 package com.squareup.picasso;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.net.Uri;
+import android.os.Build;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
@@ -27,36 +40,59 @@ import java.util.concurrent.Future;
 import static android.content.ContentResolver.SCHEME_ANDROID_RESOURCE;
 import static android.content.ContentResolver.SCHEME_CONTENT;
 import static android.content.ContentResolver.SCHEME_FILE;
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.GINGERBREAD_MR1;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
 import static android.provider.ContactsContract.Contacts;
+import static com.squareup.picasso.Picasso.LoadedFrom.DISK_RESULT;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 
 abstract class BitmapHunter implements Runnable {
 
-  /**
-   * Global lock for bitmap decoding to ensure that we are only are decoding one at a time. Since
-   * this will only ever happen in background threads we help avoid excessive memory thrashing as
-   * well as potential OOMs. Shamelessly stolen from Volley.
-   */
-  private static final Object DECODE_LOCK = new Object();
-
   static final int DEFAULT_RETRY_COUNT = 2;
+  private static final String MIME_TYPE_JPEG = "image/jpeg";
 
   final Picasso picasso;
   final Dispatcher dispatcher;
   final Cache cache;
-  final String key;
+  final RequestKey key;
   final Uri uri;
   final List<Transformation> transformations;
   final List<Request> requests;
   final PicassoBitmapOptions options;
   final boolean skipMemoryCache;
+  final BitmapPool bitmapPool;
+  final DiskResultCache diskResultCache;
+  final DecodeBudget decodeBudget;
+  final EventDispatcher events;
+  final Stats stats;
+  final boolean cacheIntermediates;
 
   Bitmap result;
   Future<?> future;
   Picasso.LoadedFrom loadedFrom;
   Exception exception;
+  Picasso.Priority priority;
 
   int retryCount = DEFAULT_RETRY_COUNT;
+  Bitmap reusedBitmap;
+  boolean reuseFailed;
+  long decodeCharge;
+  Bitmap decoded; // Waiting for its transformations.
+  boolean transforming; // Only changed by the dispatcher.
+  int cachedPrefix = -1; // Transformations already applied to a cached intermediate.
+  volatile boolean cancelled; // Set by the dispatcher while the hunter may be running.
+  volatile boolean started; // Set once a submission of the hunter begins to run.
+
+  // System.nanoTime() as the hunter moves through its stages, for the latencies in Stats.
+  final long submittedAt;
+  long startedAt;
+  long fetchedAt;
+  long decodedAt;
+  long transformedAt;
+  long deliveredAt;
+  long fetchedBytes = -1; // Content length of a network response, if known.
 
   BitmapHunter(Picasso picasso, Dispatcher dispatcher, Cache cache, Request request) {
     this.picasso = picasso;
@@ -65,24 +101,54 @@ abstract class BitmapHunter implements Runnable {
     this.key = request.getKey();
     this.uri = request.getUri();
     this.transformations = request.transformations;
-    this.options = request.options;
+    // Decoding writes into the options, which other hunters of the same request may be using.
+    this.options = request.options != null ? new PicassoBitmapOptions(request.options) : null;
     this.skipMemoryCache = request.skipCache;
+    this.bitmapPool = picasso.bitmapPool;
+    this.diskResultCache = picasso.diskResultCache;
+    this.decodeBudget = picasso.decodeBudget;
+    this.events = picasso.events;
+    this.stats = picasso.stats;
+    this.cacheIntermediates = picasso.cacheIntermediates;
+    this.priority = request.getPriority();
     this.requests = new ArrayList<Request>(4);
+    this.submittedAt = System.nanoTime();
     attach(request);
   }
 
   @Override public void run() {
+    started = true;
     try {
       Thread.currentThread().setName(Utils.THREAD_PREFIX + getName());
 
-      result = hunt();
+      if (transforming) {
+        result = transform(decoded);
+        decoded = null;
+      } else {
+        startedAt = System.nanoTime();
+        Bitmap bitmap = huntSource();
+        if (decoded != null && dispatcher.transformService != null) {
+          // Free this thread for the next read and transform on a CPU thread instead.
+          dispatcher.dispatchTransform(this);
+          return;
+        }
+        result = decoded != null ? transform(decoded) : bitmap;
+        decoded = null;
+      }
+      transformedAt = System.nanoTime();
 
-      if (result == null) {
+      if (result == null && cancelled) {
+        stoppedEarly();
+      } else if (result == null) {
         dispatcher.dispatchFailed(this);
       } else {
         dispatcher.dispatchComplete(this);
       }
     } catch (IOException e) {
+      if (cancelled) {
+        stoppedEarly();
+        return;
+      }
       exception = e;
       dispatcher.dispatchRetry(this);
     } finally {
@@ -92,32 +158,175 @@ abstract class BitmapHunter implements Runnable {
 
   abstract Bitmap decode(Uri uri, PicassoBitmapOptions options, int retryCount) throws IOException;
 
-  abstract Picasso.LoadedFrom getLoadedFrom();
+  /** Returns {@code true} if this hunter reads from the network rather than the device. */
+  boolean isNetwork() {
+    return false;
+  }
+
+  Picasso.LoadedFrom getLoadedFrom() {
+    return loadedFrom;
+  }
 
   Bitmap hunt() throws IOException {
+    Bitmap bitmap = huntSource();
+    if (decoded != null) {
+      bitmap = transform(decoded);
+      decoded = null;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns the cached result or decodes the source. A decoded image which still has to be
+   * transformed is also left in {@link #decoded}.
+   */
+  Bitmap huntSource() throws IOException {
     Bitmap bitmap;
 
     if (!skipMemoryCache) {
       bitmap = cache.get(key);
       if (bitmap != null) {
         loadedFrom = MEMORY;
+        fetchedAt = decodedAt = System.nanoTime();
+        if (events != null) {
+          events.memoryHit(key);
+        }
         return bitmap;
       }
     }
 
-    bitmap = decode(uri, options, retryCount);
-
-    if (bitmap != null && (options != null || transformations != null)) {
-      synchronized (DECODE_LOCK) {
-        if (options != null) {
-          bitmap = transformResult(options, bitmap, options.exifRotation);
+    if (diskResultCache != null && key.isTransformed() && !skipMemoryCache) {
+      bitmap = diskResultCache.get(key, bitmapPool);
+      if (bitmap != null) {
+        loadedFrom = DISK_RESULT;
+        fetchedAt = decodedAt = System.nanoTime();
+        if (events != null) {
+          events.diskHit(key);
         }
-        if (transformations != null) {
-          bitmap = applyCustomTransformations(transformations, bitmap);
+        return bitmap;
+      }
+    }
+
+    if (transformations != null && !skipMemoryCache) {
+      bitmap = huntCachedPrefix();
+      if (bitmap != null) {
+        loadedFrom = MEMORY;
+        fetchedAt = decodedAt = System.nanoTime();
+        decoded = bitmap;
+        return bitmap;
+      }
+    }
+
+    // Local sources open as part of decoding. Network hunters move this once the response is in.
+    fetchedAt = System.nanoTime();
+    try {
+      bitmap = decode(uri, options, retryCount);
+    } catch (IllegalArgumentException e) {
+      if (reusedBitmap == null) {
+        throw e;
+      }
+      // The decoder refused to write into the pooled bitmap. Decode into a fresh one instead.
+      rejectReusedBitmap(options);
+      bitmap = decode(uri, options, retryCount);
+    } finally {
+      finishDecode(options);
+    }
+    if (bitmap != null && options != null && options.densityScaled) {
+      // The decoder marks the bitmap with the density it scaled to. Mark it like any other.
+      bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+    }
+    decodedAt = System.nanoTime();
+    if (events != null && bitmap != null) {
+      int sampleSize = options != null && options.inSampleSize > 1 ? options.inSampleSize : 1;
+      events.decodeEnd(key, sampleSize);
+    }
+
+    // Decoding may have found an EXIF rotation to apply.
+    if (bitmap != null && isTransformed()) {
+      decoded = bitmap;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a copy of the cached image which the longest prefix of the custom transformations
+   * produces, leaving the rest of them to {@link #transform}. Returns {@code null} if none of the
+   * intermediate images is cached.
+   */
+  private Bitmap huntCachedPrefix() {
+    for (int count = transformations.size() - 1; count >= 0; count--) {
+      Bitmap cached = probeCache(key.prefix(count));
+      if (cached != null) {
+        // Transformations recycle their input, which must not be the shared cached bitmap.
+        Bitmap copy = copyBitmap(cached, true);
+        if (copy != null) {
+          cachedPrefix = count;
         }
+        return copy;
       }
     }
+    return null;
+  }
+
+  /**
+   * Returns the image cached for {@code key}. Most prefixes are not cached, so the default caches
+   * are asked whether they hold it first, which does not count as a miss.
+   */
+  private Bitmap probeCache(RequestKey key) {
+    if (cache instanceof ConcurrentLruCache && !((ConcurrentLruCache) cache).contains(key)) {
+      return null;
+    }
+    if (cache instanceof LruCache && !((LruCache) cache).contains(key)) {
+      return null;
+    }
+    return cache.get(key);
+  }
+
+  private boolean isTransformed() {
+    return transformations != null || (options != null && options.isTransformed());
+  }
 
+  /** Applies the requested transformations to the decoded {@code bitmap}. */
+  Bitmap transform(Bitmap bitmap) throws IOException {
+    long transformCharge = estimateTransformBytes(options, bitmap);
+    if (decodeBudget != null) {
+      decodeBudget.acquire(transformCharge);
+    }
+    try {
+      boolean cacheBase =
+          cacheIntermediates && transformations != null && cachedPrefix < 0 && !skipMemoryCache;
+      int start = 0;
+      if (cachedPrefix >= 0) {
+        // The cached image already has the built-in transformations and the prefix applied.
+        start = cachedPrefix;
+      } else if (!cacheBase && transformations != null
+          && transformations.get(0) instanceof CanvasTransformation) {
+        start = countCanvasTransformations(transformations, 0);
+        bitmap = drawTransformations(options, transformations, start, bitmap, bitmapPool);
+      } else if (options != null) {
+        bitmap = transformResult(options, bitmap, options.exifRotation, bitmapPool);
+      }
+      if (cacheBase) {
+        // Other transformations of the same resized image can start from here.
+        Bitmap base = copyBitmap(bitmap, false);
+        if (base != null) {
+          cache.set(key.prefix(0), base);
+        }
+      }
+      if (transformations != null && start < transformations.size()) {
+        bitmap = applyCustomTransformations(transformations, start, bitmap, bitmapPool);
+      }
+    } finally {
+      if (decodeBudget != null) {
+        decodeBudget.release(transformCharge);
+      }
+    }
+    if (bitmap != null && diskResultCache != null && key.isTransformed()) {
+      diskResultCache.spill(key, bitmap);
+    }
+    if (events != null) {
+      events.transformEnd(key);
+    }
     return bitmap;
   }
 
@@ -130,7 +339,31 @@ abstract class BitmapHunter implements Runnable {
   }
 
   boolean cancel() {
-    return requests.isEmpty() && future != null && future.cancel(false);
+    if (requests.isEmpty() && future != null && future.cancel(false)) {
+      cancelled = true;
+      abort();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stops the transfer of a hunter which was cancelled, in case it is running. Called on the
+   * dispatcher thread.
+   */
+  void abort() {
+  }
+
+  /** Records that the transfer or decode of this hunter failed because it was cancelled. */
+  private void stoppedEarly() {
+    if (stats != null) {
+      stats.hunterCancelled();
+    }
+  }
+
+  /** Wraps {@code stream} so that reading it fails once this hunter is cancelled. */
+  InputStream cancellable(InputStream stream) {
+    return stream != null ? new CancellableInputStream(stream) : null;
   }
 
   boolean isCancelled() {
@@ -145,7 +378,7 @@ abstract class BitmapHunter implements Runnable {
     return result;
   }
 
-  String getKey() {
+  RequestKey getKey() {
     return key;
   }
 
@@ -165,6 +398,158 @@ abstract class BitmapHunter implements Runnable {
     return uri.getPath();
   }
 
+  /**
+   * Prepares {@code options} for the final decode so that the result can later be pooled and, when
+   * the bounds pass determined the output size, so that it is decoded into a pooled bitmap.
+   */
+  void prepareDecode(PicassoBitmapOptions options) throws IOException {
+    if (options == null) {
+      if (events != null) {
+        events.decodeStart(key);
+      }
+      return;
+    }
+    options.inPreferredConfig = decodeConfig(options);
+    boolean sized = !options.inJustDecodeBounds && options.outWidth > 0 && options.outHeight > 0;
+    int sampleSize = options.inSampleSize > 1 ? Integer.highestOneBit(options.inSampleSize) : 1;
+    int width = (options.outWidth + sampleSize - 1) / sampleSize;
+    int height = (options.outHeight + sampleSize - 1) / sampleSize;
+    if (options.densityScaled) {
+      float scale = options.inTargetDensity / (float) options.inDensity;
+      width = (int) (width * scale + 0.5f);
+      height = (int) (height * scale + 0.5f);
+    }
+    Bitmap.Config config = options.inPreferredConfig;
+
+    if (sized && decodeBudget != null) {
+      // Only decodes whose size the bounds pass determined can be charged.
+      decodeCharge = (long) width * height * BitmapPool.getBytesPerPixel(config);
+      decodeBudget.acquire(decodeCharge);
+    }
+    // Only once the budget is held, so that the time waiting for it is not counted as decoding.
+    if (events != null) {
+      events.decodeStart(key);
+    }
+
+    if (bitmapPool == null || SDK_INT < HONEYCOMB) {
+      return;
+    }
+    BitmapOptionsHoneycomb.setMutable(options);
+    boolean scaled = sampleSize > 1 || options.densityScaled;
+    if (reuseFailed || !sized || (scaled && SDK_INT < BitmapPool.KITKAT)) {
+      return; // Older decoders only reuse bitmaps for unscaled decodes.
+    }
+    if (options.region != null && SDK_INT < JELLY_BEAN) {
+      return; // Older region decoders ignore the bitmap to reuse.
+    }
+    reusedBitmap = bitmapPool.get(width, height, config);
+    BitmapOptionsHoneycomb.setInBitmap(options, reusedBitmap);
+  }
+
+  /**
+   * Returns the pooled bitmap the decoder refused to the pool and undoes {@link #prepareDecode}, so
+   * that preparing {@code options} again decodes into a fresh bitmap.
+   */
+  void rejectReusedBitmap(PicassoBitmapOptions options) {
+    Bitmap rejected = reusedBitmap;
+    finishDecode(options);
+    reuseFailed = true;
+    if (rejected != null) {
+      bitmapPool.put(rejected);
+    }
+  }
+
+  /** Undoes {@link #prepareDecode} once the decode it was prepared for has finished. */
+  private void finishDecode(PicassoBitmapOptions options) {
+    if (reusedBitmap != null) {
+      // Never hand the same pooled bitmap to another decode.
+      BitmapOptionsHoneycomb.setInBitmap(options, null);
+      reusedBitmap = null;
+    }
+    if (decodeCharge != 0) {
+      decodeBudget.release(decodeCharge);
+      decodeCharge = 0;
+    }
+  }
+
+  /**
+   * Returns the config the request asked for. Otherwise JPEGs, which have no alpha channel, are
+   * decoded to {@code RGB_565} at half the memory if the low memory config is preferred. The
+   * format is only known once a bounds pass has read the header.
+   */
+  static Bitmap.Config decodeConfig(PicassoBitmapOptions options) {
+    if (options.config != null) {
+      return options.config;
+    }
+    if (options.preferLowMemoryConfig && MIME_TYPE_JPEG.equals(options.outMimeType)) {
+      return Bitmap.Config.RGB_565;
+    }
+    return Bitmap.Config.ARGB_8888;
+  }
+
+  /**
+   * Decodes only {@code options.region} of the image in {@code stream}, sampled down as far as the
+   * target size allows. Devices without a region decoder decode the sampled image and crop it.
+   */
+  Bitmap decodeRegion(InputStream stream, PicassoBitmapOptions options) throws IOException {
+    if (stream == null) {
+      return null;
+    }
+    if (SDK_INT >= GINGERBREAD_MR1) {
+      return RegionDecoderGingerbreadMr1.decode(this, stream, options);
+    }
+    calculateRegionSampleSize(options, options.region);
+    Bitmap bitmap = BitmapFactory.decodeStream(stream, null, options);
+    return bitmap != null ? cropRegion(bitmap, options.region, options.inSampleSize) : null;
+  }
+
+  /** Samples the decode of {@code region} as if it were the whole image. */
+  static void calculateRegionSampleSize(PicassoBitmapOptions options, Rect region) {
+    options.outWidth = region.width();
+    options.outHeight = region.height();
+    if (options.targetWidth != 0 && options.targetHeight != 0) {
+      calculateInSampleSize(options);
+      // Region decoders cannot scale, so only the sample is applied.
+      clearDensityScaling(options);
+    } else {
+      options.inSampleSize = 1;
+      options.inJustDecodeBounds = false;
+    }
+  }
+
+  /** Crops {@code region}, given in unsampled pixels, out of a bitmap decoded at {@code sample}. */
+  static Bitmap cropRegion(Bitmap bitmap, Rect region, int sampleSize) {
+    int sample = Math.max(1, sampleSize);
+    int left = Math.min(region.left / sample, bitmap.getWidth());
+    int top = Math.min(region.top / sample, bitmap.getHeight());
+    int right = Math.min(region.right / sample, bitmap.getWidth());
+    int bottom = Math.min(region.bottom / sample, bitmap.getHeight());
+    if (right <= left || bottom <= top) {
+      bitmap.recycle();
+      return null;
+    }
+    if (left == 0 && top == 0 && right == bitmap.getWidth() && bottom == bitmap.getHeight()) {
+      return bitmap;
+    }
+    Bitmap cropped = Bitmap.createBitmap(bitmap, left, top, right - left, bottom - top);
+    if (cropped != bitmap) {
+      bitmap.recycle();
+    }
+    return cropped;
+  }
+
+  /** Estimates the bytes held while transforming {@code bitmap}: the input plus the output. */
+  static long estimateTransformBytes(PicassoBitmapOptions options, Bitmap bitmap) {
+    long inputBytes = Utils.getBitmapBytes(bitmap);
+    long outputBytes = inputBytes;
+    if (options != null && options.targetWidth != 0 && options.targetHeight != 0) {
+      Bitmap.Config config = bitmap.getConfig();
+      outputBytes = (long) options.targetWidth * options.targetHeight
+          * BitmapPool.getBytesPerPixel(config != null ? config : Bitmap.Config.ARGB_8888);
+    }
+    return inputBytes + outputBytes;
+  }
+
   static BitmapHunter forRequest(Context context, Picasso picasso, Dispatcher dispatcher,
       Cache cache, Request request, Downloader downloader, boolean airplaneMode) {
     if (request.getResourceId() != 0) {
@@ -188,25 +573,69 @@ abstract class BitmapHunter implements Runnable {
     }
   }
 
+  /**
+   * Samples the decode by the largest power of two which keeps the image at least as large as the
+   * target and scales the rest of the way with the decoder's density scaling. The decoder then
+   * emits the size which {@link #transformResult} would otherwise have scaled to.
+   */
   static void calculateInSampleSize(PicassoBitmapOptions options) {
     final int height = options.outHeight;
     final int width = options.outWidth;
     final int reqHeight = options.targetHeight;
     final int reqWidth = options.targetWidth;
     int sampleSize = 1;
-    if (height > reqHeight || width > reqWidth) {
-      final int heightRatio = Math.round((float) height / (float) reqHeight);
-      final int widthRatio = Math.round((float) width / (float) reqWidth);
-      sampleSize = heightRatio < widthRatio ? heightRatio : widthRatio;
+    clearDensityScaling(options);
+    // A bounds pass without a target size only learns the format.
+    if (reqWidth > 0 && reqHeight > 0 && (height > reqHeight || width > reqWidth)) {
+      // Density scaling is uniform, so scale along one side. Center inside fits the side which
+      // needs the most reduction and everything else fills the side which needs the least.
+      float widthRatio = (float) width / reqWidth;
+      float heightRatio = (float) height / reqHeight;
+      boolean byWidth =
+          options.centerInside ? widthRatio >= heightRatio : widthRatio <= heightRatio;
+      int size = byWidth ? width : height;
+      int reqSize = byWidth ? reqWidth : reqHeight;
+      if (size > reqSize) {
+        sampleSize = Integer.highestOneBit(size / reqSize);
+        if (size != reqSize * sampleSize) {
+          options.inScaled = true;
+          options.inDensity = size;
+          options.inTargetDensity = reqSize * sampleSize;
+          options.densityScaled = true;
+        }
+      }
     }
 
     options.inSampleSize = sampleSize;
     options.inJustDecodeBounds = false;
   }
 
+  static void clearDensityScaling(PicassoBitmapOptions options) {
+    if (options.densityScaled) {
+      options.inDensity = 0;
+      options.inTargetDensity = 0;
+      options.densityScaled = false;
+    }
+  }
+
   static Bitmap applyCustomTransformations(List<Transformation> transformations, Bitmap result) {
-    for (int i = 0, count = transformations.size(); i < count; i++) {
+    return applyCustomTransformations(transformations, 0, result, null);
+  }
+
+  /**
+   * Applies {@code transformations} from {@code start} on. Runs of canvas transformations draw
+   * into bitmaps from {@code bitmapPool}.
+   */
+  static Bitmap applyCustomTransformations(List<Transformation> transformations, int start,
+      Bitmap result, BitmapPool bitmapPool) {
+    for (int i = start, count = transformations.size(); i < count; i++) {
       Transformation transformation = transformations.get(i);
+      if (transformation instanceof CanvasTransformation) {
+        int end = countCanvasTransformations(transformations, i);
+        result = drawTransformations(transformations, i, end, result, null, bitmapPool);
+        i = end - 1;
+        continue;
+      }
       Bitmap newResult = transformation.transform(result);
 
       if (newResult == null) {
@@ -239,6 +668,35 @@ abstract class BitmapHunter implements Runnable {
   }
 
   static Bitmap transformResult(PicassoBitmapOptions options, Bitmap result, int exifRotation) {
+    return transformResult(options, result, exifRotation, null);
+  }
+
+  static Bitmap transformResult(PicassoBitmapOptions options, Bitmap result, int exifRotation,
+      BitmapPool bitmapPool) {
+    Matrix matrix = new Matrix();
+    Rect drawArea = new Rect();
+    if (!calculateResultMatrix(options, result, exifRotation, matrix, drawArea)) {
+      // The decoder already produced the target size and there is nothing to crop.
+      return result;
+    }
+
+    Bitmap newResult = Bitmap.createBitmap(result, drawArea.left, drawArea.top, drawArea.width(),
+        drawArea.height(), matrix, false);
+    if (newResult != result) {
+      releaseBitmap(result, bitmapPool);
+      result = newResult;
+    }
+
+    return result;
+  }
+
+  /**
+   * Sets {@code matrix} and {@code drawArea} to the built-in transformations of {@code result}, the
+   * way {@link Bitmap#createBitmap(Bitmap, int, int, int, int, Matrix, boolean)} takes them.
+   * Returns {@code false} if they leave {@code result} unchanged.
+   */
+  static boolean calculateResultMatrix(PicassoBitmapOptions options, Bitmap result,
+      int exifRotation, Matrix matrix, Rect drawArea) {
     int inWidth = result.getWidth();
     int inHeight = result.getHeight();
 
@@ -247,7 +705,7 @@ abstract class BitmapHunter implements Runnable {
     int drawWidth = inWidth;
     int drawHeight = inHeight;
 
-    Matrix matrix = new Matrix();
+    boolean transformed = false;
 
     if (options != null) {
       int targetWidth = options.targetWidth;
@@ -255,6 +713,7 @@ abstract class BitmapHunter implements Runnable {
 
       float targetRotation = options.targetRotation;
       if (targetRotation != 0) {
+        transformed = true;
         if (options.hasRotationPivot) {
           matrix.setRotate(targetRotation, options.targetPivotX, options.targetPivotY);
         } else {
@@ -277,12 +736,18 @@ abstract class BitmapHunter implements Runnable {
           drawX = (inWidth - newSize) / 2;
           drawWidth = newSize;
         }
-        matrix.preScale(scale, scale);
+        if (scale != 1) {
+          matrix.preScale(scale, scale);
+          transformed = true;
+        }
       } else if (options.centerInside) {
         float widthRatio = targetWidth / (float) inWidth;
         float heightRatio = targetHeight / (float) inHeight;
         float scale = widthRatio < heightRatio ? widthRatio : heightRatio;
-        matrix.preScale(scale, scale);
+        if (scale != 1) {
+          matrix.preScale(scale, scale);
+          transformed = true;
+        }
       } else if (targetWidth != 0 && targetHeight != 0 //
           && (targetWidth != inWidth || targetHeight != inHeight)) {
         // If an explicit target size has been specified and they do not match the results bounds,
@@ -290,26 +755,187 @@ abstract class BitmapHunter implements Runnable {
         float sx = targetWidth / (float) inWidth;
         float sy = targetHeight / (float) inHeight;
         matrix.preScale(sx, sy);
+        transformed = true;
       }
 
       float targetScaleX = options.targetScaleX;
       float targetScaleY = options.targetScaleY;
       if (targetScaleX != 0 || targetScaleY != 0) {
         matrix.setScale(targetScaleX, targetScaleY);
+        transformed = true;
       }
     }
 
     if (exifRotation != 0) {
       matrix.preRotate(exifRotation);
+      transformed = true;
     }
 
-    Bitmap newResult =
-        Bitmap.createBitmap(result, drawX, drawY, drawWidth, drawHeight, matrix, false);
-    if (newResult != result) {
-      result.recycle();
-      result = newResult;
+    drawArea.set(drawX, drawY, drawX + drawWidth, drawY + drawHeight);
+    return transformed || drawWidth != inWidth || drawHeight != inHeight;
+  }
+
+  /** Returns the end of the run of canvas transformations which begins at {@code start}. */
+  static int countCanvasTransformations(List<Transformation> transformations, int start) {
+    int end = start;
+    int count = transformations.size();
+    while (end < count && transformations.get(end) instanceof CanvasTransformation) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Draws the canvas transformations which lead {@code transformations}, up to {@code end}. The
+   * first is drawn together with the built-in transformations in {@code options} unless those
+   * turn the image by an angle which is not a multiple of 90 degrees.
+   */
+  static Bitmap drawTransformations(PicassoBitmapOptions options,
+      List<Transformation> transformations, int end, Bitmap result, BitmapPool bitmapPool) {
+    Matrix matrix = new Matrix();
+    Rect drawArea = new Rect();
+    if (options == null
+        || !calculateResultMatrix(options, result, options.exifRotation, matrix, drawArea)) {
+      return drawTransformations(transformations, 0, end, result, null, bitmapPool);
+    }
+    if (!matrix.rectStaysRect()) {
+      // Only Bitmap.createBitmap clips the drawn area of an image turned at an angle.
+      result = transformResult(options, result, options.exifRotation, bitmapPool);
+      return drawTransformations(transformations, 0, end, result, null, bitmapPool);
     }
 
+    // Size the output and move the drawn area to its origin the way Bitmap.createBitmap does.
+    RectF bounds = new RectF(0, 0, drawArea.width(), drawArea.height());
+    matrix.mapRect(bounds);
+    matrix.preTranslate(-drawArea.left, -drawArea.top);
+    matrix.postTranslate(-bounds.left, -bounds.top);
+    int width = Math.max(1, Math.round(bounds.width()));
+    int height = Math.max(1, Math.round(bounds.height()));
+    return drawTransformations(transformations, 0, end, result, matrix, width, height, bitmapPool);
+  }
+
+  private static Bitmap drawTransformations(List<Transformation> transformations, int start,
+      int end, Bitmap result, Matrix matrix, BitmapPool bitmapPool) {
+    return drawTransformations(transformations, start, end, result, matrix, result.getWidth(),
+        result.getHeight(), bitmapPool);
+  }
+
+  /**
+   * Draws the canvas transformations from {@code start} to {@code end}, the first through
+   * {@code matrix} onto a {@code width} by {@code height} bitmap. Each step draws into a bitmap
+   * from {@code bitmapPool} and returns its input to the pool, where the next step finds it.
+   */
+  static Bitmap drawTransformations(List<Transformation> transformations, int start, int end,
+      Bitmap result, Matrix matrix, int width, int height, BitmapPool bitmapPool) {
+    for (int i = start; i < end; i++) {
+      CanvasTransformation transformation = (CanvasTransformation) transformations.get(i);
+      Bitmap.Config config = transformation.outputConfig(result);
+      if (config == null) {
+        config = Bitmap.Config.ARGB_8888;
+      }
+      Bitmap output = obtainBitmap(bitmapPool, width, height, config);
+      Matrix drawMatrix = i == start && matrix != null ? matrix : new Matrix();
+      Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+      transformation.draw(new Canvas(output), result, drawMatrix, paint);
+      releaseBitmap(result, bitmapPool);
+      result = output;
+    }
     return result;
   }
+
+  /** Returns a cleared {@code width} by {@code height} bitmap, pooled if possible. */
+  private static Bitmap obtainBitmap(BitmapPool bitmapPool, int width, int height,
+      Bitmap.Config config) {
+    Bitmap bitmap = bitmapPool != null ? bitmapPool.get(width, height, config) : null;
+    if (bitmap == null) {
+      return Bitmap.createBitmap(width, height, config);
+    }
+    if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      // Only KitKat hands out pooled bitmaps of a different size.
+      BitmapKitKat.reconfigure(bitmap, width, height, config);
+    }
+    bitmap.eraseColor(Color.TRANSPARENT);
+    return bitmap;
+  }
+
+  /** Returns a copy of {@code bitmap}, or {@code null} if the copy cannot be allocated. */
+  static Bitmap copyBitmap(Bitmap bitmap, boolean mutable) {
+    Bitmap.Config config = bitmap.getConfig();
+    return bitmap.copy(config != null ? config : Bitmap.Config.ARGB_8888, mutable);
+  }
+
+  /** Pools {@code bitmap} for reuse or recycles it. */
+  private static void releaseBitmap(Bitmap bitmap, BitmapPool bitmapPool) {
+    if (bitmapPool == null || !bitmapPool.put(bitmap)) {
+      bitmap.recycle();
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+  private static class RegionDecoderGingerbreadMr1 {
+    static Bitmap decode(BitmapHunter hunter, InputStream stream, PicassoBitmapOptions options)
+        throws IOException {
+      BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(stream, false);
+      try {
+        Rect region = new Rect(options.region);
+        if (!region.intersect(0, 0, decoder.getWidth(), decoder.getHeight())) {
+          return null; // The region lies outside of the image.
+        }
+        calculateRegionSampleSize(options, region);
+        hunter.prepareDecode(options);
+        return decoder.decodeRegion(region, options);
+      } finally {
+        decoder.recycle();
+      }
+    }
+  }
+
+  /**
+   * Fails reads once the hunter is cancelled. Decoders read in chunks, so a decode in progress
+   * stops at the next one.
+   */
+  final class CancellableInputStream extends FilterInputStream {
+    CancellableInputStream(InputStream stream) {
+      super(stream);
+    }
+
+    @Override public int read() throws IOException {
+      checkCancelled();
+      return super.read();
+    }
+
+    @Override public int read(byte[] buffer, int offset, int count) throws IOException {
+      checkCancelled();
+      return super.read(buffer, offset, count);
+    }
+
+    @Override public long skip(long byteCount) throws IOException {
+      checkCancelled();
+      return super.skip(byteCount);
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+      if (cancelled) {
+        throw new InterruptedIOException("Hunter cancelled.");
+      }
+    }
+  }
+
+  @TargetApi(BitmapPool.KITKAT)
+  private static class BitmapKitKat {
+    static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+      bitmap.reconfigure(width, height, config);
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+  private static class BitmapOptionsHoneycomb {
+    static void setMutable(PicassoBitmapOptions options) {
+      options.inMutable = true;
+    }
+
+    static void setInBitmap(PicassoBitmapOptions options, Bitmap bitmap) {
+      options.inBitmap = bitmap;
+    }
+  }
 }
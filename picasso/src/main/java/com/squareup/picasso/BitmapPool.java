@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+
+/**
+ * A pool of mutable bitmaps which are reused as decode targets so that loading an image does not
+ * always allocate a new pixel buffer. It is fed the images which transformations replace, which
+ * nothing but the transforming request ever referenced.
+ * <p/>
+ * Before KitKat a pooled bitmap can only be reused for a decode whose output has exactly the same
+ * dimensions and config. From KitKat on any pooled bitmap with the same config and a large enough
+ * allocation is reused.
+ * <p/>
+ * Bitmaps which leave the pool because it is full are dropped but never recycled, since they may
+ * still be referenced elsewhere.
+ */
+public class BitmapPool {
+  static final int KITKAT = 19;
+
+  /** Pooled bitmaps, least recently added first. */
+  final LinkedList<Bitmap> bitmaps = new LinkedList<Bitmap>();
+  private final int maxSize;
+  int sizeLimit; // Below maxSize while memory is trimmed.
+
+  private int size;
+  private int hitCount;
+  private int missCount;
+
+  /** Create a pool using an appropriate portion of the available RAM as the maximum size. */
+  public BitmapPool(Context context) {
+    this(Utils.calculateMemoryCacheSize(context) / 2);
+  }
+
+  /** Create a pool with a given maximum size in bytes. */
+  public BitmapPool(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    this.maxSize = maxSize;
+    this.sizeLimit = maxSize;
+  }
+
+  /**
+   * Offer a bitmap which is no longer used to the pool. Returns {@code false} if the bitmap cannot
+   * be reused, in which case the caller remains responsible for it.
+   */
+  public boolean put(Bitmap bitmap) {
+    if (bitmap == null) {
+      throw new NullPointerException("bitmap == null");
+    }
+    if (SDK_INT < HONEYCOMB || bitmap.isRecycled() || !bitmap.isMutable()) {
+      return false;
+    }
+    int bitmapSize = Utils.getBitmapBytes(bitmap);
+    if (bitmapSize > maxSize) {
+      return false;
+    }
+
+    synchronized (this) {
+      if (bitmaps.contains(bitmap)) {
+        return true;
+      }
+      if (bitmapSize > sizeLimit) {
+        return false;
+      }
+      bitmaps.addLast(bitmap);
+      size += bitmapSize;
+      evictToSize(sizeLimit);
+    }
+    return true;
+  }
+
+  /**
+   * Remove and return a bitmap which a decode producing {@code width} by {@code height} pixels in
+   * {@code config} can write into, or {@code null} if there is none.
+   */
+  public Bitmap get(int width, int height, Bitmap.Config config) {
+    if (config == null) {
+      config = Bitmap.Config.ARGB_8888;
+    }
+    int requiredSize = width * height * getBytesPerPixel(config);
+
+    synchronized (this) {
+      for (Iterator<Bitmap> i = bitmaps.iterator(); i.hasNext(); ) {
+        Bitmap candidate = i.next();
+        if (candidate.getConfig() != config) {
+          continue;
+        }
+        int candidateSize = Utils.getBitmapBytes(candidate);
+        boolean matches;
+        if (SDK_INT >= KITKAT) {
+          // Don't tie up a much larger allocation for a small image.
+          matches = candidateSize >= requiredSize && candidateSize <= requiredSize * 2;
+        } else {
+          matches = candidate.getWidth() == width && candidate.getHeight() == height;
+        }
+        if (matches) {
+          i.remove();
+          size -= candidateSize;
+          hitCount++;
+          return candidate;
+        }
+      }
+      missCount++;
+    }
+    return null;
+  }
+
+  /** Returns the sum of the sizes of the bitmaps in this pool. */
+  public final synchronized int size() {
+    return size;
+  }
+
+  /** Returns the maximum sum of the sizes of the bitmaps in this pool. */
+  public final int maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Drops the oldest pooled bitmaps until the pool fits in {@code size} bytes, and pools no more
+   * than that until called again with {@link #maxSize()}.
+   */
+  public final synchronized void trimToSize(int size) {
+    sizeLimit = Math.max(0, Math.min(maxSize, size));
+    evictToSize(sizeLimit);
+  }
+
+  private void evictToSize(int maxSize) {
+    while (size > maxSize) {
+      size -= Utils.getBitmapBytes(bitmaps.removeFirst());
+    }
+  }
+
+  /** Drops all pooled bitmaps. */
+  public final synchronized void clear() {
+    bitmaps.clear();
+    size = 0;
+  }
+
+  /** Returns the number of times {@link #get} returned a bitmap. */
+  public final synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of times {@link #get} returned {@code null}. */
+  public final synchronized int missCount() {
+    return missCount;
+  }
+
+  static int getBytesPerPixel(Bitmap.Config config) {
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+      default:
+        return 4;
+    }
+  }
+}
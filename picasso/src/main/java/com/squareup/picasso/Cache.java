@@ -21,15 +21,15 @@ import android.graphics.Bitmap;
  * A memory cache for storing the most recently used images.
  * <p/>
  * <em>Note:</em> The {@link Cache} is accessed by multiple threads. You must ensure
- * your {@link Cache} implementation is thread safe when {@link Cache#get(String)} or {@link
- * Cache#set(String, android.graphics.Bitmap)} is called.
+ * your {@link Cache} implementation is thread safe when {@link Cache#get(RequestKey)} or {@link
+ * Cache#set(RequestKey, android.graphics.Bitmap)} is called.
  */
 public interface Cache {
   /** Retrieve an image for the specified {@code key} or {@code null}. */
-  Bitmap get(String key);
+  Bitmap get(RequestKey key);
 
   /** Store an image in the cache for the specified {@code key}. */
-  void set(String key, Bitmap bitmap);
+  void set(RequestKey key, Bitmap bitmap);
 
   /** Returns the current size of the cache in bytes. */
   int size();
@@ -40,13 +40,20 @@ public interface Cache {
   /** Clears the cache. */
   void clear();
 
+  /**
+   * Evicts the least recently used images until the cache holds at most {@code size} bytes, and
+   * keeps it within that size until this is called again. Picasso calls this under memory
+   * pressure and later calls it with {@link #maxSize()} to restore the full budget.
+   */
+  void trimToSize(int size);
+
   /** A cache which does not store any values. */
   Cache NONE = new Cache() {
-    @Override public Bitmap get(String key) {
+    @Override public Bitmap get(RequestKey key) {
       return null;
     }
 
-    @Override public void set(String key, Bitmap bitmap) {
+    @Override public void set(RequestKey key, Bitmap bitmap) {
       // Ignore.
     }
 
@@ -60,5 +67,8 @@ public interface Cache {
 
     @Override public void clear() {
     }
+
+    @Override public void trimToSize(int size) {
+    }
   };
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * Image transformation which draws its result onto a canvas instead of creating a bitmap.
+ * <p/>
+ * Picasso supplies the canvas, backed by a bitmap from its {@link BitmapPool} when it has one, and
+ * recycles or pools the source itself. The first of a run of canvas transformations is drawn in
+ * the same pass as the built-in resize, crop and rotation, which it receives as {@code matrix}.
+ * Consecutive canvas transformations alternate between two bitmaps so a chain of them allocates
+ * no more than two.
+ * <p/>
+ * The output has the size of the transformed source and the config returned by
+ * {@link #outputConfig}, which is {@link Bitmap.Config#ARGB_8888} unless overridden.
+ */
+public abstract class CanvasTransformation implements Transformation {
+  /**
+   * Draw the transformed {@code source} onto {@code canvas}, which is cleared and has the size of
+   * the output. {@code matrix} maps {@code source} onto the canvas and {@code paint} filters
+   * bitmaps. Both may be modified. Do not recycle {@code source} or keep any of the arguments.
+   */
+  public abstract void draw(Canvas canvas, Bitmap source, Matrix matrix, Paint paint);
+
+  /**
+   * Returns the config of the bitmap to draw {@code source} into. The default keeps the alpha
+   * channel, so that transparency drawn over an opaque {@link Bitmap.Config#RGB_565} image does
+   * not turn black. A transformation which leaves an opaque image opaque may return the config of
+   * {@code source} to save memory.
+   */
+  public Bitmap.Config outputConfig(Bitmap source) {
+    return Bitmap.Config.ARGB_8888;
+  }
+
+  /**
+   * Draws into a new bitmap of the same size as {@code source} and recycles it. Picasso calls
+   * {@link #draw} directly, so this only serves callers of the {@link Transformation} API.
+   */
+  @Override public Bitmap transform(Bitmap source) {
+    Bitmap result =
+        Bitmap.createBitmap(source.getWidth(), source.getHeight(), outputConfig(source));
+    draw(new Canvas(result), source, new Matrix(), new Paint(Paint.FILTER_BITMAP_FLAG));
+    source.recycle();
+    return result;
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Downloader} which lets concurrent loads of the same URI share one download.
+ * <p/>
+ * Hunters for different sizes or transformations of one image have different request keys, so
+ * the dispatcher does not merge them. Instead the first load of a URI becomes the leader of a
+ * flight which other loads of the same URI may follow. Once one does, the bytes the leader reads
+ * from the delegate are kept in a shared buffer, which followers replay, blocking for bytes which
+ * have not arrived yet. Each hunter still decodes and transforms the bytes for its own request.
+ * <p/>
+ * Until a follower joins, the leader's bytes pass straight through without being copied. The
+ * flight stops accepting followers as soon as the leader reads bytes nobody kept, so a load which
+ * starts later downloads on its own.
+ * <p/>
+ * Responses which carry a decoded bitmap are never shared since hunters may recycle the bitmap
+ * they are handed.
+ */
+class CoalescingDownloader implements Downloader {
+  final Downloader delegate;
+  final Map<String, Flight> flights = new HashMap<String, Flight>();
+
+  CoalescingDownloader(Downloader delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override public Response load(Uri uri, boolean localCacheOnly) throws IOException {
+    String key = localCacheOnly + uri.toString();
+
+    synchronized (flights) {
+      Flight flight = flights.get(key);
+      if (flight != null && flight.join()) {
+        final FollowerInputStream follower = new FollowerInputStream(flight);
+        return new Response(follower, flight.cached, flight.contentLength) {
+          @Override public void abort() {
+            follower.abort();
+          }
+        };
+      }
+    }
+
+    final Response response = delegate.load(uri, localCacheOnly);
+    InputStream stream = response.getInputStream();
+    if (stream == null) {
+      return response;
+    }
+
+    final Flight flight = new Flight(key, response.cached, response.getContentLength());
+    synchronized (flights) {
+      if (flights.containsKey(key)) {
+        // Another load of this URI started meanwhile and is already leading a flight.
+        return response;
+      }
+      flights.put(key, flight);
+    }
+    return new Response(new LeaderInputStream(stream, flight), response.cached,
+        response.getContentLength()) {
+      @Override public void abort() {
+        // Followers still need the download, which the leader's stream drains for them.
+        if (flight.closeIfAlone()) {
+          land(flight);
+          response.abort();
+        }
+      }
+    };
+  }
+
+  void land(Flight flight) {
+    synchronized (flights) {
+      if (flights.get(flight.key) == flight) {
+        flights.remove(flight.key);
+      }
+    }
+  }
+
+  /** The bytes of one download, shared between its leader and followers. */
+  static final class Flight {
+    final String key;
+    final boolean cached;
+    final long contentLength;
+
+    private byte[] buffer; // Only allocated once a follower joins.
+    private int count;
+    private int followers;
+    private boolean closed; // No more followers may join.
+    private boolean complete;
+    private IOException error;
+
+    Flight(String key, boolean cached, long contentLength) {
+      this.key = key;
+      this.cached = cached;
+      this.contentLength = contentLength;
+    }
+
+    synchronized boolean join() {
+      if (closed) {
+        return false;
+      }
+      followers++;
+      return true;
+    }
+
+    /** Returns {@code true} if there are no followers, after which none may join. */
+    synchronized boolean closeIfAlone() {
+      if (followers > 0) {
+        return false;
+      }
+      closed = true;
+      return true;
+    }
+
+    /** Stops waiting for a follower which no longer reads. */
+    synchronized void leave() {
+      followers--;
+      notifyAll();
+    }
+
+    /** Returns {@code false} if nobody else will ever read what is appended. */
+    synchronized boolean append(byte[] bytes, int offset, int length) {
+      if (followers == 0) {
+        // A follower joining later would miss these bytes.
+        closed = true;
+        buffer = null;
+        return false;
+      }
+      if (buffer == null) {
+        buffer = new byte[Math.max(8192, length)];
+      } else if (count + length > buffer.length) {
+        byte[] larger = new byte[Math.max(buffer.length * 2, count + length)];
+        System.arraycopy(buffer, 0, larger, 0, count);
+        buffer = larger;
+      }
+      System.arraycopy(bytes, offset, buffer, count, length);
+      count += length;
+      notifyAll();
+      return true;
+    }
+
+    synchronized void finish(IOException error) {
+      closed = true;
+      complete = true;
+      this.error = error;
+      notifyAll();
+    }
+
+    /** Waits until the leader has read the whole download, or failed to. */
+    synchronized void awaitComplete(FollowerInputStream follower) throws IOException {
+      while (!complete && !follower.aborted) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+      if (follower.aborted) {
+        throw new InterruptedIOException("Follower aborted.");
+      }
+    }
+
+    synchronized int read(FollowerInputStream follower, byte[] bytes, int offset, int length)
+        throws IOException {
+      int position = follower.position;
+      while (position >= count && !complete && !follower.aborted) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+      if (follower.aborted) {
+        throw new InterruptedIOException("Follower aborted.");
+      }
+      if (position < count) {
+        int read = Math.min(length, count - position);
+        System.arraycopy(buffer, position, bytes, offset, read);
+        return read;
+      }
+      if (error != null) {
+        throw new IOException("Shared download failed: " + error.getMessage());
+      }
+      return -1;
+    }
+  }
+
+  /** Passes the delegate's bytes through to the leader while recording them for followers. */
+  final class LeaderInputStream extends InputStream {
+    private final InputStream stream;
+    private final Flight flight;
+    private final byte[] single = new byte[1];
+    private boolean sharing = true;
+    private boolean finished;
+
+    LeaderInputStream(InputStream stream, Flight flight) {
+      this.stream = stream;
+      this.flight = flight;
+    }
+
+    @Override public int read() throws IOException {
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+      int read;
+      try {
+        read = stream.read(bytes, offset, length);
+      } catch (IOException e) {
+        finish(e);
+        throw e;
+      }
+      if (read == -1) {
+        finish(null);
+      } else if (sharing && !flight.append(bytes, offset, read)) {
+        sharing = false;
+        land(flight);
+      }
+      return read;
+    }
+
+    @Override public int available() throws IOException {
+      return stream.available();
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        // The leader's decoder may stop early, but followers need the whole image. Unless there are
+        // any, the flight closes before it is decided not to drain, so that none can join.
+        if (sharing && !finished && !flight.closeIfAlone()) {
+          byte[] drain = new byte[8192];
+          while (!finished) {
+            read(drain, 0, drain.length);
+          }
+        }
+      } catch (IOException ignored) {
+        // Already reported to the followers.
+      } finally {
+        finish(new IOException("Download closed before it completed."));
+        stream.close();
+      }
+    }
+
+    private void finish(IOException error) {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      land(flight);
+      flight.finish(error);
+    }
+  }
+
+  /** Replays a flight's bytes, waiting for the leader when it catches up. */
+  static final class FollowerInputStream extends InputStream {
+    private final Flight flight;
+    private final byte[] single = new byte[1];
+    int position;
+    volatile boolean aborted;
+
+    FollowerInputStream(Flight flight) {
+      this.flight = flight;
+    }
+
+    @Override public int read() throws IOException {
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      int read = flight.read(this, bytes, offset, length);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+
+    /**
+     * Waits for the whole download, after which reads never block. The leader may wait for decode
+     * budget before it reads on, so a follower must not hold any while it waits for the leader.
+     */
+    void awaitDownload() throws IOException {
+      flight.awaitComplete(this);
+    }
+
+    /** Fails the current and all further reads. */
+    void abort() {
+      if (!aborted) {
+        aborted = true;
+        flight.leave();
+      }
+    }
+  }
+}
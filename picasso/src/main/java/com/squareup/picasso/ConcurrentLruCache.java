@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A memory cache which uses an approximate least-recently used eviction policy and never blocks
+ * readers.
+ * <p/>
+ * Entries are spread across the lock stripes of a {@link ConcurrentHashMap} so that lookups from
+ * the main thread do not contend with stores and evictions performed by background threads.
+ * Recency is tracked with a logical clock stamped on every hit rather than by reordering a linked
+ * list, so eviction removes the entries with the oldest stamps once the shared byte budget is
+ * exceeded. Since that means sorting a snapshot of every entry, a set which exceeds the budget
+ * evicts a tenth of it at once, and the sets which follow fit in the room that leaves.
+ */
+public class ConcurrentLruCache implements Cache {
+  private static final Comparator<Entry> OLDEST_FIRST = new Comparator<Entry>() {
+    @Override public int compare(Entry lhs, Entry rhs) {
+      return lhs.evictionStamp < rhs.evictionStamp ? -1
+          : (lhs.evictionStamp == rhs.evictionStamp ? 0 : 1);
+    }
+  };
+  /** Eviction frees {@code 1 / EVICTION_BATCH} of the budget beyond what a set needs. */
+  private static final int EVICTION_BATCH = 10;
+
+  final ConcurrentHashMap<RequestKey, Entry> map;
+  private final int maxSize;
+  private volatile int sizeLimit;
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicInteger size = new AtomicInteger();
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  private final AtomicInteger putCount = new AtomicInteger();
+  private final AtomicInteger evictionCount = new AtomicInteger();
+  private final AtomicInteger hitCount = new AtomicInteger();
+  private final AtomicInteger missCount = new AtomicInteger();
+
+  /** Receives transformed bitmaps evicted by {@link #trimToSize(int)}, if set. */
+  volatile DiskResultCache spillCache;
+
+  /** Create a cache using an appropriate portion of the available RAM as the maximum size. */
+  public ConcurrentLruCache(Context context) {
+    this(Utils.calculateMemoryCacheSize(context));
+  }
+
+  /** Create a cache with a given maximum size in bytes. */
+  public ConcurrentLruCache(int maxSize) {
+    this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  /**
+   * Create a cache with a given maximum size in bytes whose keys are split across
+   * {@code concurrencyLevel} lock stripes.
+   */
+  public ConcurrentLruCache(int maxSize, int concurrencyLevel) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException("Concurrency level must be positive.");
+    }
+    this.maxSize = maxSize;
+    this.sizeLimit = maxSize;
+    this.map = new ConcurrentHashMap<RequestKey, Entry>(16, 0.75f, concurrencyLevel);
+  }
+
+  @Override public Bitmap get(RequestKey key) {
+    if (key == null) {
+      throw new NullPointerException("key == null");
+    }
+
+    Entry entry = map.get(key);
+    if (entry != null) {
+      entry.accessTime = clock.incrementAndGet();
+      hitCount.incrementAndGet();
+      return entry.bitmap;
+    }
+    missCount.incrementAndGet();
+    return null;
+  }
+
+  /** Returns whether an image is cached for {@code key}, without counting a hit or miss. */
+  boolean contains(RequestKey key) {
+    return map.containsKey(key);
+  }
+
+  @Override public void set(RequestKey key, Bitmap bitmap) {
+    if (key == null || bitmap == null) {
+      throw new NullPointerException("key == null || bitmap == null");
+    }
+
+    Entry entry = new Entry(key, bitmap, Utils.getBitmapBytes(bitmap), clock.incrementAndGet());
+    putCount.incrementAndGet();
+    size.addAndGet(entry.size);
+    Entry previous = map.put(key, entry);
+    if (previous != null) {
+      size.addAndGet(-previous.size);
+    }
+
+    int sizeLimit = this.sizeLimit;
+    if (size.get() > sizeLimit) {
+      evictToSize(sizeLimit - sizeLimit / EVICTION_BATCH, false);
+    }
+  }
+
+  @Override public void trimToSize(int size) {
+    int sizeLimit = Math.max(0, Math.min(maxSize, size));
+    this.sizeLimit = sizeLimit;
+    DiskResultCache spillCache = this.spillCache;
+    List<Entry> evicted = evictToSize(sizeLimit, spillCache != null);
+    if (evicted == null) {
+      return;
+    }
+    // Hand off the spills without holding the lock.
+    for (Entry entry : evicted) {
+      if (entry.key.isTransformed()) {
+        spillCache.spill(entry.key, entry.bitmap);
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries until the cache fits in {@code maxSize}. Only one
+   * thread evicts at a time, but readers are never blocked while it does so. If {@code collect}
+   * is true, the evicted entries are returned.
+   */
+  private List<Entry> evictToSize(int maxSize, boolean collect) {
+    List<Entry> evicted = null;
+    evictionLock.lock();
+    try {
+      if (size.get() <= maxSize) {
+        return null;
+      }
+
+      // Snapshot the entries and their stamps and evict in stamp order. Entries touched after the
+      // snapshot are still candidates, which is what makes the ordering approximate.
+      Entry[] entries = map.values().toArray(new Entry[0]);
+      for (Entry entry : entries) {
+        entry.evictionStamp = entry.accessTime;
+      }
+      Arrays.sort(entries, OLDEST_FIRST);
+      for (int i = 0; i < entries.length && size.get() > maxSize; i++) {
+        Entry entry = entries[i];
+        if (map.remove(entry.key, entry)) {
+          size.addAndGet(-entry.size);
+          evictionCount.incrementAndGet();
+          if (collect) {
+            if (evicted == null) {
+              evicted = new ArrayList<Entry>();
+            }
+            evicted.add(entry);
+          }
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return evicted;
+  }
+
+  /** Clear the cache. */
+  public final void evictAll() {
+    evictToSize(-1, false); // -1 will evict 0-sized elements
+  }
+
+  /** Returns the sum of the sizes of the entries in this cache. */
+  @Override public final int size() {
+    return size.get();
+  }
+
+  /** Returns the maximum sum of the sizes of the entries in this cache. */
+  @Override public final int maxSize() {
+    return maxSize;
+  }
+
+  @Override public final void clear() {
+    evictAll();
+  }
+
+  /** Returns the number of times {@link #get} returned a value. */
+  public final int hitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of times {@link #get} returned {@code null}. */
+  public final int missCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of times {@link #set(RequestKey, Bitmap)} was called. */
+  public final int putCount() {
+    return putCount.get();
+  }
+
+  /** Returns the number of values that have been evicted. */
+  public final int evictionCount() {
+    return evictionCount.get();
+  }
+
+  static final class Entry {
+    final RequestKey key;
+    final Bitmap bitmap;
+    final int size;
+    volatile long accessTime;
+    long evictionStamp; // Only accessed while holding the eviction lock.
+
+    Entry(RequestKey key, Bitmap bitmap, int size, long accessTime) {
+      this.key = key;
+      this.bitmap = bitmap;
+      this.size = size;
+      this.accessTime = accessTime;
+    }
+  }
+}
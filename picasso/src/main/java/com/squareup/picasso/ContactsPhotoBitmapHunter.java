@@ -41,6 +41,7 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
 
   @Override Bitmap decode(Uri uri, PicassoBitmapOptions options, int retryCount)
       throws IOException {
+    loadedFrom = DISK;
     InputStream is = null;
     try {
       is = getInputStream();
@@ -50,10 +51,6 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
     }
   }
 
-  @Override Picasso.LoadedFrom getLoadedFrom() {
-    return DISK;
-  }
-
   private InputStream getInputStream() throws IOException {
     ContentResolver contentResolver = context.getContentResolver();
     Uri uri = this.uri;
@@ -71,6 +68,9 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
   }
 
   private Bitmap decodeStream(InputStream stream, PicassoBitmapOptions options) throws IOException {
+    if (options != null && options.region != null) {
+      return decodeRegion(stream, options);
+    }
     if (options != null && options.inJustDecodeBounds) {
       InputStream is = getInputStream();
       try {
@@ -80,6 +80,7 @@ class ContactsPhotoBitmapHunter extends BitmapHunter {
       }
       calculateInSampleSize(options);
     }
+    prepareDecode(options);
     return BitmapFactory.decodeStream(stream, null, options);
   }
 
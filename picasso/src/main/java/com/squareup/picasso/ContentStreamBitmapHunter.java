@@ -37,15 +37,20 @@ class ContentStreamBitmapHunter extends BitmapHunter {
 
   @Override Bitmap decode(Uri uri, PicassoBitmapOptions options, int retryCount)
       throws IOException {
+    loadedFrom = DISK;
     return decodeContentStream(uri, options);
   }
 
-  @Override Picasso.LoadedFrom getLoadedFrom() {
-    return DISK;
-  }
-
   private Bitmap decodeContentStream(Uri path, PicassoBitmapOptions options) throws IOException {
     ContentResolver contentResolver = context.getContentResolver();
+    if (options != null && options.region != null) {
+      InputStream is = contentResolver.openInputStream(path);
+      try {
+        return decodeRegion(is, options);
+      } finally {
+        Utils.closeQuietly(is);
+      }
+    }
     if (options != null && options.inJustDecodeBounds) {
       InputStream is = null;
       try {
@@ -56,6 +61,7 @@ class ContentStreamBitmapHunter extends BitmapHunter {
       }
       calculateInSampleSize(options);
     }
+    prepareDecode(options);
     InputStream is = contentResolver.openInputStream(path);
     try {
       return BitmapFactory.decodeStream(is, null, options);
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+
+/**
+ * Admits decodes and transformations while the sum of their estimated bitmap bytes fits in a
+ * budget, so that small images are processed concurrently while large ones cannot exhaust the
+ * heap together.
+ * <p/>
+ * Work is admitted in arrival order so a large image is not starved by a stream of small ones.
+ * Work which is larger than the whole budget is admitted once nothing else is running.
+ */
+class DecodeBudget {
+  private final long maxBytes;
+  private final LinkedList<Object> waiters = new LinkedList<Object>();
+
+  private long usedBytes;
+  private int active;
+
+  private long waitCount;
+  private long totalWaitTime;
+
+  DecodeBudget(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Budget must be positive.");
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /** Blocks until {@code bytes} fit in the budget. Every call must be paired with a release. */
+  synchronized void acquire(long bytes) throws InterruptedIOException {
+    if (waiters.isEmpty() && fits(bytes)) {
+      admit(bytes);
+      return;
+    }
+
+    Object waiter = new Object();
+    waiters.addLast(waiter);
+    long waitStart = System.nanoTime();
+    try {
+      while (waiters.getFirst() != waiter || !fits(bytes)) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      waiters.remove(waiter);
+      notifyAll(); // The next waiter may be at the front of the line now.
+      throw new InterruptedIOException();
+    }
+    waiters.removeFirst();
+    waitCount++;
+    totalWaitTime += System.nanoTime() - waitStart;
+    admit(bytes);
+    notifyAll();
+  }
+
+  synchronized void release(long bytes) {
+    usedBytes -= bytes;
+    active--;
+    notifyAll();
+  }
+
+  long maxBytes() {
+    return maxBytes;
+  }
+
+  /** Returns the number of acquisitions which had to wait. */
+  synchronized long waitCount() {
+    return waitCount;
+  }
+
+  /** Returns the total time in milliseconds that acquisitions waited. */
+  synchronized long totalWaitTime() {
+    return totalWaitTime / 1000000;
+  }
+
+  private boolean fits(long bytes) {
+    return active == 0 || usedBytes + bytes <= maxBytes;
+  }
+
+  private void admit(long bytes) {
+    usedBytes += bytes;
+    active++;
+  }
+}
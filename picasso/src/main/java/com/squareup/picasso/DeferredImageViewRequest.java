@@ -12,7 +12,7 @@ class DeferredImageViewRequest extends ImageViewRequest
 
   DeferredImageViewRequest(Picasso picasso, Uri uri, int resourceId, ImageView imageView,
       PicassoBitmapOptions options, List<Transformation> transformations, boolean skipCache,
-      boolean noFade, int errorResId, Drawable errorDrawable, String key, Callback callback) {
+      boolean noFade, int errorResId, Drawable errorDrawable, RequestKey key, Callback callback) {
     super(picasso, uri, resourceId, imageView, options, transformations, skipCache, noFade,
         errorResId, errorDrawable, key, callback);
     ViewTreeObserver observer = imageView.getViewTreeObserver();
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+
+/**
+ * A disk cache of final, resized and transformed bitmaps keyed by their request key. A hit skips
+ * fetching the original source, the full size decode and every transformation.
+ * <p/>
+ * Each entry holds a small header followed by the bitmap compressed as PNG if it has alpha and as
+ * JPEG otherwise.
+ */
+class DiskResultCache {
+  private static final int MAGIC = 0x50524331; // "PRC1"
+  private static final int JPEG_QUALITY = 90;
+
+  final DiskStore store;
+  /** Runs the writes of {@link #spill}, if set. */
+  volatile Executor spillExecutor;
+
+  DiskResultCache(File directory, long maxSize) {
+    this.store = new DiskStore(directory, maxSize);
+  }
+
+  /**
+   * Returns the bitmap stored for {@code key}, or {@code null}. A pooled bitmap of the right size
+   * is used as the decode target if {@code bitmapPool} is not {@code null}.
+   */
+  Bitmap get(RequestKey key, BitmapPool bitmapPool) {
+    // Entries are keyed by the string form, which is rendered once per key.
+    String keyString = key.toString();
+    String name = DiskStore.nameFor(keyString);
+    File file = store.get(name);
+    if (file == null) {
+      return null;
+    }
+
+    InputStream is = null;
+    try {
+      is = new BufferedInputStream(new FileInputStream(file));
+      DataInputStream header = new DataInputStream(is);
+      if (header.readInt() != MAGIC || !keyString.equals(header.readUTF())) {
+        store.remove(name);
+        return null;
+      }
+      Bitmap.Config config = Bitmap.Config.valueOf(header.readUTF());
+      int width = header.readInt();
+      int height = header.readInt();
+
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inPreferredConfig = config;
+      Bitmap reusable = null;
+      if (bitmapPool != null && SDK_INT >= HONEYCOMB) {
+        reusable = bitmapPool.get(width, height, config);
+        BitmapOptionsHoneycomb.setReusable(options, reusable);
+      }
+      Bitmap bitmap;
+      try {
+        bitmap = BitmapFactory.decodeStream(is, null, options);
+      } catch (IllegalArgumentException e) {
+        if (reusable == null) {
+          throw e;
+        }
+        // The decoder refused the pooled bitmap. Read the entry again into a fresh one.
+        bitmapPool.put(reusable);
+        Utils.closeQuietly(is);
+        is = null;
+        return get(key, null);
+      }
+      if (bitmap == null) {
+        store.remove(name);
+      }
+      return bitmap;
+    } catch (IOException e) {
+      store.remove(name);
+      return null;
+    } catch (IllegalArgumentException e) {
+      // Unknown config or a decoder failure. Either way the entry is unusable.
+      store.remove(name);
+      return null;
+    } finally {
+      Utils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Stores {@code bitmap} for {@code key} on the {@link #spillExecutor}, so that neither a hunter
+   * nor trimming the memory cache waits for the encode and write. Dropped if the executor is shut
+   * down.
+   */
+  void spill(final RequestKey key, final Bitmap bitmap) {
+    Executor executor = spillExecutor;
+    if (executor == null) {
+      set(key, bitmap);
+      return;
+    }
+    try {
+      executor.execute(new Runnable() {
+        @Override public void run() {
+          set(key, bitmap);
+        }
+      });
+    } catch (RejectedExecutionException ignored) {
+      // Picasso was shut down, and the bitmap was only going to be cached.
+    }
+  }
+
+  /** Stores {@code bitmap} for {@code key}. Failures are ignored since this is only a cache. */
+  void set(RequestKey key, Bitmap bitmap) {
+    Bitmap.Config config = bitmap.getConfig();
+    if (config == null) {
+      return;
+    }
+
+    File temp = null;
+    OutputStream os = null;
+    try {
+      temp = store.newTempFile();
+      os = new BufferedOutputStream(new FileOutputStream(temp));
+      DataOutputStream header = new DataOutputStream(os);
+      header.writeInt(MAGIC);
+      header.writeUTF(key.toString());
+      header.writeUTF(config.name());
+      header.writeInt(bitmap.getWidth());
+      header.writeInt(bitmap.getHeight());
+      header.flush();
+      boolean hasAlpha = bitmap.hasAlpha();
+      boolean written = bitmap.compress(hasAlpha ? Bitmap.CompressFormat.PNG
+          : Bitmap.CompressFormat.JPEG, JPEG_QUALITY, os);
+      os.close();
+      os = null;
+      if (written) {
+        store.commit(temp, DiskStore.nameFor(key.toString()));
+      } else {
+        store.abort(temp);
+      }
+    } catch (IOException e) {
+      if (temp != null) {
+        store.abort(temp);
+      }
+    } finally {
+      Utils.closeQuietly(os);
+    }
+  }
+
+  void clear() {
+    store.clear();
+  }
+
+  @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+  private static class BitmapOptionsHoneycomb {
+    static void setReusable(BitmapFactory.Options options, Bitmap bitmap) {
+      options.inMutable = true;
+      options.inBitmap = bitmap;
+    }
+  }
+}
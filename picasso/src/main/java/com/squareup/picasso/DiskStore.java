@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A directory of files bounded to a maximum total size, evicting the least recently used files.
+ * <p/>
+ * Files are written to a temporary file first and renamed into place by {@link #commit}, so readers
+ * never observe a partially written entry. Recency survives restarts through the last modified
+ * time of each file.
+ */
+class DiskStore {
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final Comparator<File> OLDEST_FIRST = new Comparator<File>() {
+    @Override public int compare(File lhs, File rhs) {
+      long l = lhs.lastModified();
+      long r = rhs.lastModified();
+      return l < r ? -1 : (l == r ? 0 : 1);
+    }
+  };
+
+  final File directory;
+  private final long maxSize;
+
+  /** File sizes by name, least recently used first. Null until the directory is first read. */
+  private LinkedHashMap<String, Long> entries;
+  private long size;
+  private int tempCount;
+
+  DiskStore(File directory, long maxSize) {
+    if (directory == null) {
+      throw new IllegalArgumentException("Directory must not be null.");
+    }
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Max size must be positive.");
+    }
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /** Returns a stable file name for {@code key}. */
+  static String nameFor(String key) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      byte[] hash = digest.digest(key.getBytes("UTF-8"));
+      char[] name = new char[hash.length * 2];
+      for (int i = 0; i < hash.length; i++) {
+        name[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+        name[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+      }
+      return new String(name);
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Returns the file stored under {@code name} and marks it as recently used, or {@code null}. */
+  synchronized File get(String name) {
+    initialize();
+    Long length = entries.remove(name);
+    if (length == null) {
+      return null;
+    }
+    File file = new File(directory, name);
+    if (!file.exists()) {
+      // Deleted behind our back.
+      size -= length;
+      return null;
+    }
+    entries.put(name, length);
+    //noinspection ResultOfMethodCallIgnored
+    file.setLastModified(System.currentTimeMillis());
+    return file;
+  }
+
+  /** Returns a new temporary file to be passed to {@link #commit} or {@link #abort}. */
+  synchronized File newTempFile() throws IOException {
+    initialize();
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    return new File(directory, (tempCount++) + "-" + System.nanoTime() + TEMP_SUFFIX);
+  }
+
+  /**
+   * Moves {@code temp} into place under {@code name}, replacing any previous file, and evicts the
+   * least recently used files if the store is over its maximum size.
+   */
+  synchronized boolean commit(File temp, String name) {
+    initialize();
+    long length = temp.length();
+    if (length == 0 || length > maxSize) {
+      abort(temp);
+      return false;
+    }
+    File file = new File(directory, name);
+    Long previous = entries.remove(name);
+    if (previous != null) {
+      size -= previous;
+    }
+    if (!temp.renameTo(file)) {
+      abort(temp);
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+      return false;
+    }
+    entries.put(name, length);
+    size += length;
+    trimToSize(maxSize);
+    return true;
+  }
+
+  /** Discards a temporary file obtained from {@link #newTempFile}. */
+  void abort(File temp) {
+    //noinspection ResultOfMethodCallIgnored
+    temp.delete();
+  }
+
+  /** Removes the file stored under {@code name}, if any. */
+  synchronized void remove(String name) {
+    initialize();
+    Long length = entries.remove(name);
+    if (length != null) {
+      size -= length;
+      //noinspection ResultOfMethodCallIgnored
+      new File(directory, name).delete();
+    }
+  }
+
+  /** Evicts the least recently used files until the store fits in {@code maxSize} bytes. */
+  synchronized void trimToSize(long maxSize) {
+    initialize();
+    Iterator<Map.Entry<String, Long>> i = entries.entrySet().iterator();
+    while (size > maxSize && i.hasNext()) {
+      Map.Entry<String, Long> entry = i.next();
+      i.remove();
+      size -= entry.getValue();
+      //noinspection ResultOfMethodCallIgnored
+      new File(directory, entry.getKey()).delete();
+    }
+  }
+
+  /** Deletes every file in the store. */
+  synchronized void clear() {
+    trimToSize(-1);
+  }
+
+  /** Returns the sum of the sizes of the files in this store. */
+  synchronized long size() {
+    initialize();
+    return size;
+  }
+
+  long maxSize() {
+    return maxSize;
+  }
+
+  private void initialize() {
+    if (entries == null) {
+      initializeFrom(directory.listFiles());
+    }
+  }
+
+  private void initializeFrom(File[] files) {
+    entries = new LinkedHashMap<String, Long>(16, 0.75f, false);
+    size = 0;
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, OLDEST_FIRST);
+    for (File file : files) {
+      if (file.getName().endsWith(TEMP_SUFFIX)) {
+        // Left over from a write which never completed.
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        continue;
+      }
+      long length = file.length();
+      entries.put(file.getName(), length);
+      size += length;
+    }
+  }
+}
@@ -28,9 +28,15 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
 
 import static android.content.Context.CONNECTIVITY_SERVICE;
@@ -54,34 +60,76 @@ class Dispatcher {
   static final int HUNTER_BATCH_COMPLETE = 8;
   static final int NETWORK_STATE_CHANGE = 9;
   static final int AIRPLANE_MODE_CHANGE = 10;
+  static final int TAG_PAUSE = 11;
+  static final int TAG_RESUME = 12;
+  static final int HUNTER_TRANSFORM = 13;
+  static final int TRIM_MEMORY = 14;
+  static final int RESTORE_MEMORY = 15;
 
   private static final String DISPATCHER_THREAD_NAME = "Dispatcher";
   private static final int BATCH_DELAY = 100; // ms
+  private static final int RESTORE_MEMORY_DELAY = 60 * 1000; // ms
+
+  /** Higher priorities first, keeping the order of equal ones. */
+  private static final Comparator<Request> PRIORITY_ORDER = new Comparator<Request>() {
+    @Override public int compare(Request lhs, Request rhs) {
+      return rhs.getPriority().ordinal() - lhs.getPriority().ordinal();
+    }
+  };
 
   final DispatcherThread dispatcherThread;
   final Context context;
   final ExecutorService service;
+  final ExecutorService localService;
+  final ExecutorService transformService;
   final Downloader downloader;
-  final Map<String, BitmapHunter> hunterMap;
+  final Map<RequestKey, BitmapHunter> hunterMap;
   final Handler handler;
   final Handler mainThreadHandler;
   final Cache cache;
+  final BitmapPool bitmapPool;
   final List<BitmapHunter> batch;
+  final Set<Object> pausedTags;
+  final Map<Object, Request> pausedRequests;
+  final Map<Object, Request> failedRequests;
+  final RetryPolicy retryPolicy;
 
-  boolean airplaneMode;
+  volatile boolean airplaneMode;
+  volatile boolean connected = true; // Until told otherwise, e.g. without permission to ask.
+  int trimmedCacheSize = -1; // The size the cache is held to under memory pressure, if any.
 
   Dispatcher(Context context, ExecutorService service, Handler mainThreadHandler,
       Downloader downloader, Cache cache) {
+    this(context, service, null, null, mainThreadHandler, downloader, cache, null);
+  }
+
+  /**
+   * Network hunters run on {@code service}, which is sized by connectivity, and all other hunters
+   * on {@code localService} so that they never queue behind a slow network. Transformations of a
+   * decoded image run on {@code transformService}. Without a local service everything runs on
+   * {@code service}, and without a transform service hunters transform where they decoded. The
+   * {@code bitmapPool}, if any, is trimmed along with the cache.
+   */
+  Dispatcher(Context context, ExecutorService service, ExecutorService localService,
+      ExecutorService transformService, Handler mainThreadHandler, Downloader downloader,
+      Cache cache, BitmapPool bitmapPool) {
     this.dispatcherThread = new DispatcherThread();
     this.dispatcherThread.start();
     this.context = context;
     this.service = service;
-    this.hunterMap = new LinkedHashMap<String, BitmapHunter>();
+    this.localService = localService != null ? localService : service;
+    this.transformService = transformService;
+    this.hunterMap = new LinkedHashMap<RequestKey, BitmapHunter>();
     this.handler = new DispatcherHandler(dispatcherThread.getLooper());
     this.downloader = downloader;
     this.mainThreadHandler = mainThreadHandler;
     this.cache = cache;
+    this.bitmapPool = bitmapPool;
     this.batch = new ArrayList<BitmapHunter>(4);
+    this.pausedTags = new HashSet<Object>();
+    this.pausedRequests = new WeakHashMap<Object, Request>();
+    this.failedRequests = new WeakHashMap<Object, Request>();
+    this.retryPolicy = new RetryPolicy();
     this.airplaneMode = Utils.isAirplaneModeOn(this.context);
     NetworkBroadcastReceiver receiver = new NetworkBroadcastReceiver(this.context);
     receiver.register();
@@ -89,6 +137,12 @@ class Dispatcher {
 
   void shutdown() {
     service.shutdown();
+    if (localService != service) {
+      localService.shutdown();
+    }
+    if (transformService != null) {
+      transformService.shutdown();
+    }
     dispatcherThread.quit();
   }
 
@@ -100,12 +154,29 @@ class Dispatcher {
     handler.sendMessage(handler.obtainMessage(REQUEST_CANCEL, request));
   }
 
+  void dispatchPauseTag(Object tag) {
+    handler.sendMessage(handler.obtainMessage(TAG_PAUSE, tag));
+  }
+
+  void dispatchResumeTag(Object tag) {
+    handler.sendMessage(handler.obtainMessage(TAG_RESUME, tag));
+  }
+
   void dispatchComplete(BitmapHunter hunter) {
     handler.sendMessage(handler.obtainMessage(HUNTER_COMPLETE, hunter));
   }
 
+  void dispatchTransform(BitmapHunter hunter) {
+    handler.sendMessage(handler.obtainMessage(HUNTER_TRANSFORM, hunter));
+  }
+
   void dispatchRetry(BitmapHunter hunter) {
-    handler.sendMessageDelayed(handler.obtainMessage(HUNTER_RETRY, hunter), RETRY_DELAY);
+    int delay = RETRY_DELAY;
+    if (hunter.isNetwork()) {
+      // Offline, the retry only consults the local cache, so there is nothing to wait for.
+      delay = isOffline() ? 0 : retryPolicy.failed(hunter.getUri());
+    }
+    handler.sendMessageDelayed(handler.obtainMessage(HUNTER_RETRY, hunter), delay);
   }
 
   void dispatchFailed(BitmapHunter hunter) {
@@ -121,25 +192,59 @@ class Dispatcher {
         airplaneMode ? AIRPLANE_MODE_ON : AIRPLANE_MODE_OFF, 0));
   }
 
+  void dispatchTrimMemory(int level) {
+    handler.sendMessage(handler.obtainMessage(TRIM_MEMORY, level, 0));
+  }
+
   void performSubmit(Request request) {
-    BitmapHunter hunter = hunterMap.get(request.getKey());
-    if (hunter != null) {
-      hunter.attach(request);
+    Object tag = request.getTag();
+    if (tag != null && pausedTags.contains(tag)) {
+      pausedRequests.put(getPausedKey(request), request);
       return;
     }
 
-    if (service.isShutdown()) {
+    BitmapHunter hunter = hunterMap.get(request.getKey());
+    if (hunter != null) {
+      hunter.attach(request);
+      EventDispatcher events = request.getPicasso().events;
+      if (events != null) {
+        events.requestCoalesced(hunter.getKey());
+      }
+      Picasso.Priority priority = request.getPriority();
+      if (priority.ordinal() > hunter.priority.ordinal()) {
+        ExecutorService hunterService = serviceFor(hunter);
+        if (hunterService instanceof PicassoExecutorService) {
+          ((PicassoExecutorService) hunterService).raisePriority(hunter, priority);
+        } else {
+          hunter.priority = priority;
+        }
+      }
       return;
     }
 
     hunter =
         forRequest(context, request.getPicasso(), this, cache, request, downloader, airplaneMode);
-    hunter.future = service.submit(hunter);
+    ExecutorService hunterService = serviceFor(hunter);
+    if (hunterService.isShutdown()) {
+      return;
+    }
+    hunter.future = hunterService.submit(hunter);
     hunterMap.put(request.getKey(), hunter);
   }
 
   void performCancel(Request request) {
-    String key = request.getKey();
+    if (request.getTag() != null) {
+      Object pausedKey = getPausedKey(request);
+      if (pausedRequests.get(pausedKey) == request) {
+        pausedRequests.remove(pausedKey);
+      }
+    }
+    Object failedKey = request.getTarget();
+    if (failedKey != null && failedRequests.get(failedKey) == request) {
+      failedRequests.remove(failedKey);
+    }
+
+    RequestKey key = request.getKey();
     BitmapHunter hunter = hunterMap.get(key);
     if (hunter != null) {
       hunter.detach(request);
@@ -149,23 +254,117 @@ class Dispatcher {
     }
   }
 
+  void performPauseTag(Object tag) {
+    if (!pausedTags.add(tag)) {
+      return;
+    }
+
+    // Hold back the requests with this tag from every hunter that has not started yet.
+    for (Iterator<BitmapHunter> it = hunterMap.values().iterator(); it.hasNext(); ) {
+      BitmapHunter hunter = it.next();
+      List<Request> requests = hunter.getRequests();
+      List<Request> paused = null;
+      for (int i = requests.size() - 1; i >= 0; i--) {
+        Request request = requests.get(i);
+        if (tag.equals(request.getTag())) {
+          if (paused == null) {
+            paused = new ArrayList<Request>(requests.size());
+          }
+          paused.add(request);
+        }
+      }
+      // A running hunter reports it was cancelled, but keeps reading, so let it finish.
+      if (paused == null || paused.size() != requests.size() || hunter.started) {
+        continue;
+      }
+      for (Request request : paused) {
+        hunter.detach(request);
+      }
+      if (hunter.cancel()) {
+        it.remove();
+        for (Request request : paused) {
+          pausedRequests.put(getPausedKey(request), request);
+        }
+      } else {
+        // Already running, so let it finish for the requests which were waiting on it.
+        for (Request request : paused) {
+          hunter.attach(request);
+        }
+      }
+    }
+  }
+
+  void performResumeTag(Object tag) {
+    if (!pausedTags.remove(tag)) {
+      return;
+    }
+
+    List<Request> resumed = null;
+    for (Iterator<Request> it = pausedRequests.values().iterator(); it.hasNext(); ) {
+      Request request = it.next();
+      if (tag.equals(request.getTag())) {
+        it.remove();
+        if (!request.isCancelled()) {
+          if (resumed == null) {
+            resumed = new ArrayList<Request>();
+          }
+          resumed.add(request);
+        }
+      }
+    }
+    if (resumed != null) {
+      for (Request request : resumed) {
+        performSubmit(request);
+      }
+    }
+  }
+
+  void performTransform(BitmapHunter hunter) {
+    // A hunter whose requests all went away while it decoded could not be cancelled, since it was
+    // already running, so drop it here instead of transforming for nobody.
+    if (hunter.isCancelled() || hunter.getRequests().isEmpty()) {
+      if (hunterMap.get(hunter.getKey()) == hunter) {
+        hunterMap.remove(hunter.getKey());
+      }
+      return;
+    }
+
+    if (transformService.isShutdown()) {
+      performError(hunter);
+      return;
+    }
+
+    hunter.transforming = true;
+    hunter.future = transformService.submit(hunter);
+  }
+
   void performRetry(BitmapHunter hunter) {
     if (hunter.isCancelled()) return;
 
-    if (service.isShutdown()) {
+    ExecutorService hunterService = serviceFor(hunter);
+    if (hunterService.isShutdown()) {
       performError(hunter);
       return;
     }
 
+    boolean offline = hunter.isNetwork() && isOffline();
     if (hunter.retryCount > 0) {
-      hunter.retryCount--;
-      hunter.future = service.submit(hunter);
+      // Offline, only the local cache can still help, so skip to the cache-only attempt.
+      hunter.retryCount = offline ? 0 : hunter.retryCount - 1;
+      hunter.started = false;
+      hunter.future = hunterService.submit(hunter);
     } else {
+      if (offline) {
+        markForReplay(hunter);
+      }
       performError(hunter);
     }
   }
 
   void performComplete(BitmapHunter hunter) {
+    if (hunter.isNetwork()) {
+      retryPolicy.succeeded(hunter.getUri());
+    }
     if (!hunter.shouldSkipMemoryCache()) {
       cache.set(hunter.getKey(), hunter.getResult());
     }
@@ -186,6 +385,9 @@ class Dispatcher {
 
   void performAirplaneModeChange(boolean airplaneMode) {
     this.airplaneMode = airplaneMode;
+    if (!isOffline()) {
+      performReplay();
+    }
   }
 
   void performNetworkStateChange(NetworkInfo info) {
@@ -194,6 +396,91 @@ class Dispatcher {
         ((PicassoExecutorService) service).adjustThreadCount(info);
       }
     }
+    connected = info != null && info.isConnected();
+    if (!isOffline()) {
+      performReplay();
+    }
+  }
+
+  /** Submits the requests which failed while offline again, the highest priorities first. */
+  void performReplay() {
+    if (failedRequests.isEmpty()) {
+      return;
+    }
+    List<Request> replay = new ArrayList<Request>(failedRequests.values());
+    failedRequests.clear();
+    Collections.sort(replay, PRIORITY_ORDER);
+    for (Request request : replay) {
+      request.willReplay = false;
+      if (!request.isCancelled() && request.getTarget() != null) {
+        performSubmit(request);
+      }
+    }
+  }
+
+  /**
+   * Trims the cache in proportion to the memory trim {@code level}. The cache is held to the
+   * smallest size asked for until no trim has been requested for a while, and then restored.
+   */
+  void performTrimMemory(int level) {
+    int size = Utils.calculateTrimmedCacheSize(cache.maxSize(), level);
+    if (trimmedCacheSize != -1) {
+      size = Math.min(size, trimmedCacheSize);
+    }
+    if (size < cache.maxSize()) {
+      trimmedCacheSize = size;
+      cache.trimToSize(size);
+      if (bitmapPool != null) {
+        // Pooled bitmaps are only kept for reuse, so they go as quickly as cached ones.
+        bitmapPool.trimToSize((int) ((long) bitmapPool.maxSize() * size / cache.maxSize()));
+      }
+    }
+    if (trimmedCacheSize != -1) {
+      handler.removeMessages(RESTORE_MEMORY);
+      handler.sendEmptyMessageDelayed(RESTORE_MEMORY, RESTORE_MEMORY_DELAY);
+    }
+  }
+
+  void performRestoreMemory() {
+    trimmedCacheSize = -1;
+    cache.trimToSize(cache.maxSize());
+    if (bitmapPool != null) {
+      bitmapPool.trimToSize(bitmapPool.maxSize());
+    }
+  }
+
+  private boolean isOffline() {
+    return airplaneMode || !connected;
+  }
+
+  /**
+   * Holds on to the requests of a hunter which failed while offline, so that they are submitted
+   * again once connectivity returns. Their targets show the error meanwhile, and stay tracked by
+   * Picasso so that loading something else into them cancels the replay.
+   */
+  private void markForReplay(BitmapHunter hunter) {
+    for (Request request : hunter.getRequests()) {
+      Object target = request.getTarget();
+      // A thumbnail is not worth replaying once the full image is.
+      if (target == null || request.isCancelled() || request instanceof ThumbnailRequest) {
+        continue;
+      }
+      request.willReplay = true;
+      failedRequests.put(target, request);
+    }
+  }
+
+  private ExecutorService serviceFor(BitmapHunter hunter) {
+    if (hunter.transforming) {
+      return transformService;
+    }
+    return hunter.isNetwork() ? service : localService;
+  }
+
+  /** Paused requests are held by their target so a newer request for the same target wins. */
+  private static Object getPausedKey(Request request) {
+    Object target = request.getTarget();
+    return target != null ? target : request;
   }
 
   private void batch(BitmapHunter hunter) {
@@ -228,6 +515,11 @@ class Dispatcher {
           performComplete(hunter);
           break;
         }
+        case HUNTER_TRANSFORM: {
+          BitmapHunter hunter = (BitmapHunter) msg.obj;
+          performTransform(hunter);
+          break;
+        }
         case HUNTER_RETRY: {
           BitmapHunter hunter = (BitmapHunter) msg.obj;
           performRetry(hunter);
@@ -251,6 +543,22 @@ class Dispatcher {
           performAirplaneModeChange(msg.arg1 == AIRPLANE_MODE_ON);
           break;
         }
+        case TAG_PAUSE: {
+          performPauseTag(msg.obj);
+          break;
+        }
+        case TAG_RESUME: {
+          performResumeTag(msg.obj);
+          break;
+        }
+        case TRIM_MEMORY: {
+          performTrimMemory(msg.arg1);
+          break;
+        }
+        case RESTORE_MEMORY: {
+          performRestoreMemory();
+          break;
+        }
         default:
           throw new AssertionError("Unknown handler message received: " + msg.what);
       }
@@ -273,7 +581,8 @@ class Dispatcher {
     }
 
     void register() {
-      boolean shouldScanState = service instanceof PicassoExecutorService && //
+      // Connectivity sizes the network service and triggers the replay of failed requests.
+      boolean shouldScanState =
           Utils.hasPermission(context, Manifest.permission.ACCESS_NETWORK_STATE);
       IntentFilter filter = new IntentFilter();
       filter.addAction(ACTION_AIRPLANE_MODE_CHANGED);
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.squareup.picasso.Downloader.Response;
+
+/**
+ * A disk cache of downloaded images as they were received, keyed by their URI. It works with any
+ * {@link Downloader}, whether or not its HTTP stack caches.
+ * <p/>
+ * A download is copied to a temporary file while it is decoded and stored only once the decode
+ * succeeded, so a broken or partial download is never served. Hits are read through a memory
+ * mapping of the file. Entries do not expire and are only evicted by size.
+ */
+class DownloadCache {
+  final DiskStore store;
+
+  DownloadCache(File directory, long maxSize) {
+    this.store = new DiskStore(directory, maxSize);
+  }
+
+  /** Returns the download stored for {@code uri}, or {@code null}. */
+  Response get(Uri uri) {
+    String name = DiskStore.nameFor(uri.toString());
+    File file = store.get(name);
+    if (file == null) {
+      return null;
+    }
+
+    FileInputStream is = null;
+    try {
+      is = new FileInputStream(file);
+      FileChannel channel = is.getChannel();
+      // The mapping stays valid once the file is closed, and even once it is evicted.
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new Response(new ByteBufferInputStream(buffer), true, buffer.remaining());
+    } catch (IOException e) {
+      store.remove(name);
+      return null;
+    } finally {
+      Utils.closeQuietly(is);
+    }
+  }
+
+  /** Removes the download stored for {@code uri}, if any. */
+  void remove(Uri uri) {
+    store.remove(DiskStore.nameFor(uri.toString()));
+  }
+
+  /**
+   * Returns a stream which reads {@code stream} and copies what it reads for {@code uri}, or
+   * {@code null} if the copy cannot be written.
+   */
+  TeeInputStream tee(Uri uri, InputStream stream) {
+    File temp = null;
+    try {
+      temp = store.newTempFile();
+      OutputStream os = new BufferedOutputStream(new FileOutputStream(temp));
+      return new TeeInputStream(stream, os, temp, DiskStore.nameFor(uri.toString()));
+    } catch (IOException e) {
+      if (temp != null) {
+        store.abort(temp);
+      }
+      return null;
+    }
+  }
+
+  void clear() {
+    store.clear();
+  }
+
+  /**
+   * Copies the bytes read from a download to a temporary file, which is stored by
+   * {@link #commit} or discarded by {@link #abort}. Failures to write only stop the copy.
+   */
+  final class TeeInputStream extends FilterInputStream {
+    private final File temp;
+    private final String name;
+    private OutputStream copy; // Null once the copy failed or finished.
+
+    TeeInputStream(InputStream in, OutputStream copy, File temp, String name) {
+      super(in);
+      this.copy = copy;
+      this.temp = temp;
+      this.name = name;
+    }
+
+    @Override public int read() throws IOException {
+      int read = in.read();
+      if (read != -1 && copy != null) {
+        try {
+          copy.write(read);
+        } catch (IOException e) {
+          abort();
+        }
+      }
+      return read;
+    }
+
+    @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+      int read = in.read(bytes, offset, length);
+      if (read > 0 && copy != null) {
+        try {
+          copy.write(bytes, offset, read);
+        } catch (IOException e) {
+          abort();
+        }
+      }
+      return read;
+    }
+
+    /** Skipped bytes are read, since the copy needs them too. */
+    @Override public long skip(long byteCount) throws IOException {
+      if (byteCount <= 0) {
+        return 0;
+      }
+      byte[] skipped = new byte[(int) Math.min(byteCount, 8192)];
+      int read = read(skipped, 0, skipped.length);
+      return read == -1 ? 0 : read;
+    }
+
+    @Override public boolean markSupported() {
+      return false;
+    }
+
+    /** Reads the rest of the download and stores the copy. Call before closing this stream. */
+    void commit() {
+      if (copy == null) {
+        return;
+      }
+      try {
+        // The decoder may stop before the end, but the entry must hold the whole download.
+        byte[] buffer = new byte[8192];
+        int read;
+        do {
+          read = read(buffer, 0, buffer.length);
+        } while (read != -1);
+      } catch (IOException e) {
+        abort();
+      }
+      if (copy == null) {
+        return;
+      }
+      try {
+        copy.close();
+        copy = null;
+        store.commit(temp, name);
+      } catch (IOException e) {
+        abort();
+      }
+    }
+
+    /** Discards the copy. */
+    void abort() {
+      if (copy != null) {
+        Utils.closeQuietly(copy);
+        copy = null;
+      }
+      store.abort(temp);
+    }
+  }
+
+  /** Reads a buffer, such as a memory mapped file. */
+  static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private int mark;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, read);
+      return read;
+    }
+
+    @Override public long skip(long byteCount) {
+      int skipped = (int) Math.min(Math.max(byteCount, 0), buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override public int available() {
+      return buffer.remaining();
+    }
+
+    @Override public boolean markSupported() {
+      return true;
+    }
+
+    @Override public synchronized void mark(int readLimit) {
+      mark = buffer.position();
+    }
+
+    @Override public synchronized void reset() {
+      buffer.position(mark);
+    }
+  }
+}
@@ -39,6 +39,7 @@ public interface Downloader {
     final InputStream stream;
     final Bitmap bitmap;
     final boolean cached;
+    final long contentLength;
 
     /**
      * Response image and info.
@@ -53,6 +54,7 @@ public interface Downloader {
       this.stream = null;
       this.bitmap = bitmap;
       this.cached = loadedFromCache;
+      this.contentLength = -1;
     }
 
     /**
@@ -62,12 +64,24 @@ public interface Downloader {
      * @param loadedFromCache {@code true} if the source of the stream is from a local disk cache.
      */
     public Response(InputStream stream, boolean loadedFromCache) {
+      this(stream, loadedFromCache, -1);
+    }
+
+    /**
+     * Response stream and info.
+     *
+     * @param stream Image data stream.
+     * @param loadedFromCache {@code true} if the source of the stream is from a local disk cache.
+     * @param contentLength The length of the stream in bytes, or -1 if it is unknown.
+     */
+    public Response(InputStream stream, boolean loadedFromCache, long contentLength) {
       if (stream == null) {
         throw new IllegalArgumentException("Stream may not be null.");
       }
       this.stream = stream;
       this.bitmap = null;
       this.cached = loadedFromCache;
+      this.contentLength = contentLength;
     }
 
     /**
@@ -87,5 +101,20 @@ public interface Downloader {
     public Bitmap getBitmap() {
       return bitmap;
     }
+
+    /** The length of {@link #getInputStream()} in bytes, or -1 if it is unknown. */
+    public long getContentLength() {
+      return contentLength;
+    }
+
+    /**
+     * Stops the transfer because the image is no longer needed. Called from another thread than
+     * the one reading {@link #getInputStream()}, which may then fail. Closes the stream by
+     * default. Override this if closing the stream does not stop the transfer, for example to
+     * disconnect the connection.
+     */
+    public void abort() {
+      Utils.closeQuietly(stream);
+    }
   }
 }
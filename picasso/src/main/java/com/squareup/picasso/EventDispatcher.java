@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+
+import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
+
+/**
+ * Timestamps events where they happen and hands them to an {@link EventListener} on a background
+ * thread. Only created when a listener is set, so callers null check it and nothing is allocated
+ * without one.
+ */
+class EventDispatcher {
+  private static final int REQUEST_SUBMITTED = 1;
+  private static final int REQUEST_COALESCED = 2;
+  private static final int MEMORY_HIT = 3;
+  private static final int DISK_HIT = 4;
+  private static final int FETCH_START = 5;
+  private static final int FETCH_END = 6;
+  private static final int DECODE_START = 7;
+  private static final int DECODE_END = 8;
+  private static final int TRANSFORM_END = 9;
+  private static final int DELIVERED = 10;
+  private static final int REQUEST_CANCELLED = 11;
+
+  private static final String EVENTS_THREAD_NAME = Utils.THREAD_PREFIX + "Events";
+
+  final EventListener listener;
+  final HandlerThread eventsThread;
+  final Handler handler;
+
+  EventDispatcher(EventListener listener) {
+    this.listener = listener;
+    this.eventsThread = new HandlerThread(EVENTS_THREAD_NAME, THREAD_PRIORITY_BACKGROUND);
+    this.eventsThread.start();
+    this.handler = new EventHandler(eventsThread.getLooper());
+  }
+
+  void requestSubmitted(Request request) {
+    Event event = new Event(request.getKey());
+    event.uri = request.getUri();
+    event.value = request.getResourceId();
+    dispatch(REQUEST_SUBMITTED, event);
+  }
+
+  void requestCoalesced(RequestKey key) {
+    dispatch(REQUEST_COALESCED, new Event(key));
+  }
+
+  void memoryHit(RequestKey key) {
+    dispatch(MEMORY_HIT, new Event(key));
+  }
+
+  void diskHit(RequestKey key) {
+    dispatch(DISK_HIT, new Event(key));
+  }
+
+  void fetchStart(RequestKey key) {
+    dispatch(FETCH_START, new Event(key));
+  }
+
+  void fetchEnd(RequestKey key, long contentLength) {
+    Event event = new Event(key);
+    event.value = contentLength;
+    dispatch(FETCH_END, event);
+  }
+
+  void decodeStart(RequestKey key) {
+    dispatch(DECODE_START, new Event(key));
+  }
+
+  void decodeEnd(RequestKey key, int sampleSize) {
+    Event event = new Event(key);
+    event.value = sampleSize;
+    dispatch(DECODE_END, event);
+  }
+
+  void transformEnd(RequestKey key) {
+    dispatch(TRANSFORM_END, new Event(key));
+  }
+
+  void delivered(RequestKey key, Picasso.LoadedFrom from) {
+    Event event = new Event(key);
+    event.from = from;
+    dispatch(DELIVERED, event);
+  }
+
+  void requestCancelled(RequestKey key) {
+    dispatch(REQUEST_CANCELLED, new Event(key));
+  }
+
+  void shutdown() {
+    eventsThread.quit();
+  }
+
+  private void dispatch(int what, Event event) {
+    handler.sendMessage(handler.obtainMessage(what, event));
+  }
+
+  private static final class Event {
+    final RequestKey key;
+    final long timeNanos;
+    Uri uri;
+    long value;
+    Picasso.LoadedFrom from;
+
+    Event(RequestKey key) {
+      this.key = key;
+      this.timeNanos = System.nanoTime();
+    }
+  }
+
+  private class EventHandler extends Handler {
+    public EventHandler(Looper looper) {
+      super(looper);
+    }
+
+    @Override public void handleMessage(final Message msg) {
+      Event event = (Event) msg.obj;
+      switch (msg.what) {
+        case REQUEST_SUBMITTED:
+          listener.onRequestSubmitted(event.key, event.uri, (int) event.value, event.timeNanos);
+          break;
+        case REQUEST_COALESCED:
+          listener.onRequestCoalesced(event.key, event.timeNanos);
+          break;
+        case MEMORY_HIT:
+          listener.onMemoryHit(event.key, event.timeNanos);
+          break;
+        case DISK_HIT:
+          listener.onDiskHit(event.key, event.timeNanos);
+          break;
+        case FETCH_START:
+          listener.onFetchStart(event.key, event.timeNanos);
+          break;
+        case FETCH_END:
+          listener.onFetchEnd(event.key, event.value, event.timeNanos);
+          break;
+        case DECODE_START:
+          listener.onDecodeStart(event.key, event.timeNanos);
+          break;
+        case DECODE_END:
+          listener.onDecodeEnd(event.key, (int) event.value, event.timeNanos);
+          break;
+        case TRANSFORM_END:
+          listener.onTransformEnd(event.key, event.timeNanos);
+          break;
+        case DELIVERED:
+          listener.onDelivered(event.key, event.from, event.timeNanos);
+          break;
+        case REQUEST_CANCELLED:
+          listener.onRequestCancelled(event.key, event.timeNanos);
+          break;
+        default:
+          Picasso.HANDLER.post(new Runnable() {
+            @Override public void run() {
+              throw new AssertionError("Unknown event message received: " + msg.what);
+            }
+          });
+      }
+    }
+  }
+}
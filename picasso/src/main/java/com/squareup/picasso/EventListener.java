@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+
+/**
+ * Receives the events of loading images, for monitoring. Register one with
+ * {@link Picasso.Builder#eventListener(EventListener)}.
+ * <p>
+ * Each event carries the {@link System#nanoTime()} at which it happened. Events are delivered in
+ * order on a single background thread, so implementations need no locking but should return
+ * quickly. Images are identified by their {@link RequestKey}: requests for the same image with the
+ * same options and transformations share a key, and share a load once they are coalesced.
+ */
+public abstract class EventListener {
+  /** A request for {@code uri}, or for the resource {@code resourceId}, was submitted. */
+  public void onRequestSubmitted(RequestKey key, Uri uri, int resourceId, long timeNanos) {
+  }
+
+  /** A submitted request joined a load of the same image which was already in progress. */
+  public void onRequestCoalesced(RequestKey key, long timeNanos) {
+  }
+
+  /**
+   * The image was found in the memory cache. Requests whose image is cached when they are made
+   * complete at once and are never submitted.
+   */
+  public void onMemoryHit(RequestKey key, long timeNanos) {
+  }
+
+  /** The image was found in the disk result cache, the download cache or the HTTP cache. */
+  public void onDiskHit(RequestKey key, long timeNanos) {
+  }
+
+  /** A network load is about to ask the {@link Downloader} for the image. */
+  public void onFetchStart(RequestKey key, long timeNanos) {
+  }
+
+  /**
+   * The {@link Downloader} returned a response of {@code contentLength} bytes, or -1 if the length
+   * is unknown. The body is read while it is decoded.
+   */
+  public void onFetchEnd(RequestKey key, long contentLength, long timeNanos) {
+  }
+
+  /** Decoding is about to start, once the memory it needs has been admitted. */
+  public void onDecodeStart(RequestKey key, long timeNanos) {
+  }
+
+  /** Decoding finished, subsampling the source by {@code sampleSize}. */
+  public void onDecodeEnd(RequestKey key, int sampleSize, long timeNanos) {
+  }
+
+  /** The resizing, rotation and transformations of the request were applied. */
+  public void onTransformEnd(RequestKey key, long timeNanos) {
+  }
+
+  /** The image was delivered to its requests on the main thread. */
+  public void onDelivered(RequestKey key, Picasso.LoadedFrom from, long timeNanos) {
+  }
+
+  /** A request was cancelled, or replaced by a newer request for the same target. */
+  public void onRequestCancelled(RequestKey key, long timeNanos) {
+  }
+}
@@ -5,16 +5,29 @@ import android.net.Uri;
 import java.util.List;
 
 class FetchRequest extends Request<Void> {
+  private Callback callback;
 
   FetchRequest(Picasso picasso, Uri uri, int resourceId, PicassoBitmapOptions bitmapOptions,
-      List<Transformation> transformations, boolean skipCache) {
+      List<Transformation> transformations, boolean skipCache, RequestKey key, Callback callback) {
     super(picasso, uri, resourceId, null, bitmapOptions, transformations, skipCache, false, 0, null,
-        null);
+        key);
+    this.callback = callback;
   }
 
   @Override void complete(Bitmap result, Picasso.LoadedFrom from) {
+    if (callback != null) {
+      callback.onSuccess();
+    }
   }
 
   @Override public void error() {
+    if (callback != null) {
+      callback.onError();
+    }
+  }
+
+  @Override void cancel() {
+    super.cancel();
+    callback = null;
   }
 }
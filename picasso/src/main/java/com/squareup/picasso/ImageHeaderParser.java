@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Reads the dimensions of a JPEG, PNG, GIF or WebP image from the start of a stream, so that its
+ * decode can be sampled without a bounds pass. The bytes read on the way are kept and replayed by
+ * {@link #stream()} ahead of the rest of the stream, which is never buffered.
+ */
+final class ImageHeaderParser {
+  /** Metadata such as EXIF may precede the dimensions of a JPEG. Beyond this, give up. */
+  static final int MAX_HEADER_SIZE = 128 * 1024;
+
+  private static final int JPEG_SOI = 0xFFD8;
+  private static final int JPEG_SOS = 0xDA;
+  private static final int JPEG_EOI = 0xD9;
+  private static final byte[] PNG_SIGNATURE =
+      { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+  private final InputStream in;
+  private byte[] buffer = new byte[512];
+  private int count; // Bytes read from the stream.
+  private int position; // Bytes parsed.
+
+  int width;
+  int height;
+  String mimeType;
+
+  ImageHeaderParser(InputStream in) {
+    this.in = in;
+  }
+
+  /** Returns {@code true} if the header was recognized and its dimensions read. */
+  boolean parse() throws IOException {
+    if (!require(12)) {
+      return false;
+    }
+    if (readShort() == JPEG_SOI) {
+      return parseJpeg();
+    }
+    position = 0;
+    if (startsWith(PNG_SIGNATURE)) {
+      return parsePng();
+    }
+    if (startsWith("GIF87a") || startsWith("GIF89a")) {
+      return parseGif();
+    }
+    if (startsWith("RIFF") && matches(8, "WEBP")) {
+      return parseWebp();
+    }
+    return false;
+  }
+
+  /** Returns the whole image: the bytes which were parsed followed by the rest of the stream. */
+  InputStream stream() {
+    return new SequenceInputStream(new ByteArrayInputStream(buffer, 0, count), in);
+  }
+
+  private boolean parseJpeg() throws IOException {
+    while (require(4)) {
+      if ((buffer[position++] & 0xFF) != 0xFF) {
+        return false;
+      }
+      int marker = buffer[position++] & 0xFF;
+      if (marker == 0xFF) {
+        position--; // Fill byte.
+        continue;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+        continue; // Markers without a segment.
+      }
+      if (marker == JPEG_SOS || marker == JPEG_EOI) {
+        return false; // Image data, but no frame header.
+      }
+      int length = readShort();
+      if (length < 2) {
+        return false;
+      }
+      // Start of frame markers, other than the huffman, extension and arithmetic coding tables.
+      if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+        if (!require(5)) {
+          return false;
+        }
+        position++; // Sample precision.
+        height = readShort();
+        width = readShort();
+        return found("image/jpeg");
+      }
+      if (!require(length - 2)) {
+        return false;
+      }
+      position += length - 2;
+    }
+    return false;
+  }
+
+  private boolean parsePng() throws IOException {
+    // The IHDR chunk comes first: its length, its type, then the width and height.
+    position = PNG_SIGNATURE.length + 4;
+    if (!require(12) || !matches(position, "IHDR")) {
+      return false;
+    }
+    position += 4;
+    width = readInt();
+    height = readInt();
+    return found("image/png");
+  }
+
+  private boolean parseGif() throws IOException {
+    position = 6;
+    width = readShortLittleEndian();
+    height = readShortLittleEndian();
+    return found("image/gif");
+  }
+
+  private boolean parseWebp() throws IOException {
+    if (!require(30)) {
+      return false;
+    }
+    position = 20; // The data of the first chunk.
+    if (matches(12, "VP8 ")) {
+      // Lossy: a frame tag and a start code, then 14 bit dimensions.
+      position += 6;
+      width = readShortLittleEndian() & 0x3FFF;
+      height = readShortLittleEndian() & 0x3FFF;
+    } else if (matches(12, "VP8L")) {
+      // Lossless: a signature, then 14 bit dimensions less one, packed.
+      position++;
+      int bits = readShortLittleEndian() | readShortLittleEndian() << 16;
+      width = (bits & 0x3FFF) + 1;
+      height = (bits >> 14 & 0x3FFF) + 1;
+    } else if (matches(12, "VP8X")) {
+      // Extended: flags, then 24 bit canvas dimensions less one.
+      position += 4;
+      width = readShortLittleEndian() + ((buffer[position++] & 0xFF) << 16) + 1;
+      height = readShortLittleEndian() + ((buffer[position++] & 0xFF) << 16) + 1;
+    } else {
+      return false;
+    }
+    return found("image/webp");
+  }
+
+  private boolean found(String mimeType) {
+    this.mimeType = mimeType;
+    return width > 0 && height > 0;
+  }
+
+  /** Reads until {@code length} bytes past the position are buffered. */
+  private boolean require(int length) throws IOException {
+    int needed = position + length;
+    if (needed > MAX_HEADER_SIZE) {
+      return false;
+    }
+    if (needed > buffer.length) {
+      byte[] larger = new byte[Math.min(MAX_HEADER_SIZE, Math.max(buffer.length * 2, needed))];
+      System.arraycopy(buffer, 0, larger, 0, count);
+      buffer = larger;
+    }
+    while (count < needed) {
+      int read = in.read(buffer, count, buffer.length - count);
+      if (read == -1) {
+        return false;
+      }
+      count += read;
+    }
+    return true;
+  }
+
+  private boolean startsWith(String prefix) {
+    return matches(0, prefix);
+  }
+
+  private boolean startsWith(byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean matches(int offset, String ascii) {
+    for (int i = 0; i < ascii.length(); i++) {
+      if (buffer[offset + i] != ascii.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int readShort() {
+    return (buffer[position++] & 0xFF) << 8 | buffer[position++] & 0xFF;
+  }
+
+  private int readShortLittleEndian() {
+    return buffer[position++] & 0xFF | (buffer[position++] & 0xFF) << 8;
+  }
+
+  private int readInt() {
+    return readShort() << 16 | readShort();
+  }
+}
@@ -10,10 +10,11 @@ import java.util.List;
 class ImageViewRequest extends Request<ImageView> {
 
   private Callback callback;
+  ThumbnailRequest thumbnail;
 
   ImageViewRequest(Picasso picasso, Uri uri, int resourceId, ImageView imageView,
       PicassoBitmapOptions options, List<Transformation> transformations, boolean skipCache,
-      boolean noFade, int errorResId, Drawable errorDrawable, String key, Callback callback) {
+      boolean noFade, int errorResId, Drawable errorDrawable, RequestKey key, Callback callback) {
     super(picasso, uri, resourceId, imageView, options, transformations, skipCache, noFade,
         errorResId, errorDrawable, key);
     this.callback = callback;
@@ -25,6 +26,8 @@ class ImageViewRequest extends Request<ImageView> {
           String.format("Attempted to complete request with no result!\n%s", this));
     }
 
+    cancelThumbnail();
+
     ImageView target = this.target.get();
     if (target == null) {
       return;
@@ -40,6 +43,8 @@ class ImageViewRequest extends Request<ImageView> {
   }
 
   @Override public void error() {
+    cancelThumbnail();
+
     ImageView target = this.target.get();
     if (target == null) {
       return;
@@ -57,8 +62,17 @@ class ImageViewRequest extends Request<ImageView> {
 
   @Override void cancel() {
     super.cancel();
+    cancelThumbnail();
     if (callback != null) {
       callback = null;
     }
   }
+
+  private void cancelThumbnail() {
+    if (thumbnail != null) {
+      thumbnail.cancel();
+      picasso.dispatcher.dispatchCancel(thumbnail);
+      thumbnail = null;
+    }
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+/**
+ * Counts latencies into fixed power of two buckets: bucket 0 holds everything under 1ms and
+ * bucket {@code i} holds {@code [2^(i-1), 2^i)} ms. Recording never allocates. Not thread safe.
+ */
+final class LatencyHistogram {
+  static final int BUCKET_COUNT = 24;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long count;
+
+  void record(long millis) {
+    int bucket = millis <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+    counts[Math.min(bucket, BUCKET_COUNT - 1)]++;
+    count++;
+  }
+
+  long count() {
+    return count;
+  }
+
+  /**
+   * Returns the upper bound in ms of the bucket which holds the {@code percent}th percentile, or
+   * 0 if nothing was recorded. Latencies beyond the last bucket report its upper bound.
+   */
+  long percentile(int percent) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (count * percent + 99) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return 1L << i;
+      }
+    }
+    return 1L << (BUCKET_COUNT - 1);
+  }
+}
@@ -22,15 +22,19 @@ import java.util.Map;
 
 /** A memory cache which uses a least-recently used eviction policy. */
 public class LruCache implements Cache {
-  final LinkedHashMap<String, Bitmap> map;
+  final LinkedHashMap<RequestKey, Bitmap> map;
   private final int maxSize;
 
   private int size;
+  private int sizeLimit;
   private int putCount;
   private int evictionCount;
   private int hitCount;
   private int missCount;
 
+  /** Receives transformed bitmaps evicted by {@link #trimToSize(int)}, if set. */
+  volatile DiskResultCache spillCache;
+
   /** Create a cache using an appropriate portion of the available RAM as the maximum size. */
   public LruCache(Context context) {
     this(Utils.calculateMemoryCacheSize(context));
@@ -42,10 +46,11 @@ public class LruCache implements Cache {
       throw new IllegalArgumentException("Max size must be positive.");
     }
     this.maxSize = maxSize;
-    this.map = new LinkedHashMap<String, Bitmap>(0, 0.75f, true);
+    this.sizeLimit = maxSize;
+    this.map = new LinkedHashMap<RequestKey, Bitmap>(0, 0.75f, true);
   }
 
-  @Override public Bitmap get(String key) {
+  @Override public Bitmap get(RequestKey key) {
     if (key == null) {
       throw new NullPointerException("key == null");
     }
@@ -63,13 +68,20 @@ public class LruCache implements Cache {
     return null;
   }
 
-  @Override public void set(String key, Bitmap bitmap) {
+  /** Returns whether an image is cached for {@code key}, without counting a hit or miss. */
+  synchronized boolean contains(RequestKey key) {
+    return map.containsKey(key);
+  }
+
+  @Override public void set(RequestKey key, Bitmap bitmap) {
     if (key == null || bitmap == null) {
       throw new NullPointerException("key == null || bitmap == null");
     }
 
     Bitmap previous;
+    int sizeLimit;
     synchronized (this) {
+      sizeLimit = this.sizeLimit;
       putCount++;
       size += Utils.getBitmapBytes(bitmap);
       previous = map.put(key, bitmap);
@@ -78,12 +90,20 @@ public class LruCache implements Cache {
       }
     }
 
-    trimToSize(maxSize);
+    evictToSize(sizeLimit, null);
   }
 
-  private void trimToSize(int maxSize) {
+  @Override public void trimToSize(int size) {
+    int sizeLimit = Math.max(0, Math.min(maxSize, size));
+    synchronized (this) {
+      this.sizeLimit = sizeLimit;
+    }
+    evictToSize(sizeLimit, spillCache);
+  }
+
+  private void evictToSize(int maxSize, DiskResultCache spillCache) {
     while (true) {
-      String key;
+      RequestKey key;
       Bitmap value;
       synchronized (this) {
         if (size < 0 || (map.isEmpty() && size != 0)) {
@@ -95,19 +115,23 @@ public class LruCache implements Cache {
           break;
         }
 
-        Map.Entry<String, Bitmap> toEvict = map.entrySet().iterator().next();
+        Map.Entry<RequestKey, Bitmap> toEvict = map.entrySet().iterator().next();
         key = toEvict.getKey();
         value = toEvict.getValue();
         map.remove(key);
         size -= Utils.getBitmapBytes(value);
         evictionCount++;
       }
+
+      if (spillCache != null && key.isTransformed()) {
+        spillCache.spill(key, value);
+      }
     }
   }
 
   /** Clear the cache. */
   public final void evictAll() {
-    trimToSize(-1); // -1 will evict 0-sized elements
+    evictToSize(-1, null); // -1 will evict 0-sized elements
   }
 
   /** Returns the sum of the sizes of the entries in this cache. */
@@ -134,7 +158,7 @@ public class LruCache implements Cache {
     return missCount;
   }
 
-  /** Returns the number of times {@link #set(String, Bitmap)} was called. */
+  /** Returns the number of times {@link #set(RequestKey, Bitmap)} was called. */
   public final synchronized int putCount() {
     return putCount;
   }
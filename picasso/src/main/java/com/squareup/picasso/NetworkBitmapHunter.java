@@ -27,54 +27,157 @@ import static com.squareup.picasso.Picasso.LoadedFrom.NETWORK;
 
 class NetworkBitmapHunter extends BitmapHunter {
   private final Downloader downloader;
+  private final DownloadCache downloadCache;
   private final boolean airplaneMode;
-  private Picasso.LoadedFrom loadedFrom;
+  private volatile Response response; // While it is read, so that it can be aborted.
 
   public NetworkBitmapHunter(Picasso picasso, Dispatcher dispatcher, Cache cache, Request request,
       Downloader downloader, boolean airplaneMode) {
     super(picasso, dispatcher, cache, request);
     this.downloader = downloader;
+    this.downloadCache = picasso.downloadCache;
     this.airplaneMode = airplaneMode;
   }
 
+  @Override boolean isNetwork() {
+    return true;
+  }
+
+  @Override void abort() {
+    Response response = this.response;
+    if (response != null) {
+      response.abort();
+    }
+  }
+
   @Override Bitmap decode(Uri uri, PicassoBitmapOptions options, int retryCount)
       throws IOException {
     boolean loadFromLocalCacheOnly = retryCount == 0 || airplaneMode;
+    if (downloadCache != null) {
+      Response cached = downloadCache.get(this.uri);
+      if (cached != null) {
+        Bitmap bitmap = decodeResponse(cached, options, false);
+        if (bitmap == null) {
+          // Not an image after all. Do not serve it again.
+          downloadCache.remove(this.uri);
+        }
+        return bitmap;
+      }
+    }
+    if (events != null) {
+      events.fetchStart(key);
+    }
     Response response = downloader.load(this.uri, loadFromLocalCacheOnly);
+    this.response = response;
+    try {
+      if (cancelled) {
+        // Cancelled while connecting, before there was a response to abort.
+        response.abort();
+      }
+      return decodeResponse(response, options, true);
+    } finally {
+      this.response = null;
+    }
+  }
+
+  /**
+   * Decodes {@code response}, which is {@code downloaded} unless it came from the download cache.
+   * Downloads are stored in the download cache once they decode.
+   */
+  private Bitmap decodeResponse(Response response, PicassoBitmapOptions options,
+      boolean downloaded) throws IOException {
+    fetchedAt = System.nanoTime();
+    fetchedBytes = response.getContentLength();
     loadedFrom = response.cached ? DISK : NETWORK;
+    if (events != null) {
+      if (downloaded) {
+        events.fetchEnd(key, fetchedBytes);
+      }
+      if (response.cached) {
+        events.diskHit(key);
+      }
+    }
 
     Bitmap result = response.getBitmap();
     if (result != null) {
-      return result;
+      return options != null && options.region != null
+          ? cropRegion(result, options.region, 1) : result;
     }
 
     InputStream is = null;
+    DownloadCache.TeeInputStream tee = null;
     try {
       is = response.getInputStream();
-      return decodeStream(is, options);
+      boolean follower = is instanceof CoalescingDownloader.FollowerInputStream;
+      if (follower) {
+        ((CoalescingDownloader.FollowerInputStream) is).awaitDownload();
+      }
+      // The leader of a shared download stores it for its followers too.
+      if (downloaded && downloadCache != null && is != null && !follower) {
+        tee = downloadCache.tee(this.uri, is);
+        if (tee != null) {
+          is = tee;
+        }
+      }
+      is = cancellable(is);
+      Bitmap bitmap = decodeStream(is, options);
+      if (tee != null && bitmap != null) {
+        tee.commit();
+        tee = null;
+      }
+      return bitmap;
     } finally {
+      if (tee != null) {
+        tee.abort();
+      }
       Utils.closeQuietly(is);
     }
   }
 
-  @Override Picasso.LoadedFrom getLoadedFrom() {
-    return loadedFrom;
-  }
-
   private Bitmap decodeStream(InputStream stream, PicassoBitmapOptions options) throws IOException {
     if (stream == null) {
       return null;
     }
+    if (options != null && options.region != null) {
+      return decodeRegion(stream, options);
+    }
     if (options != null && options.inJustDecodeBounds) {
-      MarkableInputStream markStream = new MarkableInputStream(stream);
-      stream = markStream;
+      // Size the decode from the header alone, so that one decode consumes the download as it
+      // arrives instead of the whole image waiting for a bounds pass.
+      ImageHeaderParser header = new ImageHeaderParser(stream);
+      boolean parsed = header.parse();
+      stream = header.stream();
+      if (parsed) {
+        options.outWidth = header.width;
+        options.outHeight = header.height;
+        options.outMimeType = header.mimeType;
+        calculateInSampleSize(options);
+      } else {
+        MarkableInputStream markStream = new MarkableInputStream(stream);
+        stream = markStream;
 
-      long mark = markStream.savePosition(1024); // Mirrors BitmapFactory.cpp value.
-      BitmapFactory.decodeStream(stream, null, options);
-      calculateInSampleSize(options);
+        long mark = markStream.savePosition(1024); // Mirrors BitmapFactory.cpp value.
+        BitmapFactory.decodeStream(stream, null, options);
+        calculateInSampleSize(options);
 
+        markStream.reset(mark);
+      }
+    }
+    prepareDecode(options);
+    if (reusedBitmap == null) {
+      return BitmapFactory.decodeStream(stream, null, options);
+    }
+    // Keep the bytes in case the decoder refuses the pooled bitmap, rather than downloading the
+    // image a second time. They take far less memory than the decoded bitmap.
+    MarkableInputStream markStream = new MarkableInputStream(stream);
+    long mark = markStream.savePosition(Integer.MAX_VALUE);
+    try {
+      return BitmapFactory.decodeStream(markStream, null, options);
+    } catch (IllegalArgumentException e) {
       markStream.reset(mark);
+      rejectReusedBitmap(options);
+      prepareDecode(options);
+      return BitmapFactory.decodeStream(markStream, null, options);
     }
-    return BitmapFactory.decodeStream(stream, null, options);
   }
 }
@@ -95,7 +95,7 @@ public class OkHttpDownloader implements Downloader {
   }
 
   @Override public Response load(Uri uri, boolean localCacheOnly) throws IOException {
-    HttpURLConnection connection = openConnection(uri);
+    final HttpURLConnection connection = openConnection(uri);
     connection.setUseCaches(true);
     if (localCacheOnly) {
       connection.setRequestProperty("Cache-Control", "only-if-cached");
@@ -103,6 +103,12 @@ public class OkHttpDownloader implements Downloader {
 
     boolean fromCache = parseResponseSourceHeader(connection.getHeaderField(RESPONSE_SOURCE));
 
-    return new Response(connection.getInputStream(), fromCache);
+    return new Response(connection.getInputStream(), fromCache,
+        connection.getHeaderFieldInt("Content-Length", -1)) {
+      @Override public void abort() {
+        // Closes the socket, which also fails a read blocked on it.
+        connection.disconnect();
+      }
+    };
   }
 }
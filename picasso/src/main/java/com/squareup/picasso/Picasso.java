@@ -15,7 +15,11 @@
  */
 package com.squareup.picasso;
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.net.Uri;
@@ -31,6 +35,9 @@ import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.ICE_CREAM_SANDWICH;
 import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 import static com.squareup.picasso.Dispatcher.HUNTER_BATCH_COMPLETE;
 import static com.squareup.picasso.Dispatcher.REQUEST_GCED;
@@ -80,26 +87,45 @@ public class Picasso {
   final Context context;
   final Dispatcher dispatcher;
   final Cache cache;
+  final BitmapPool bitmapPool;
+  final DiskResultCache diskResultCache;
+  final DownloadCache downloadCache;
+  final DecodeBudget decodeBudget;
   final Listener listener;
+  final EventDispatcher events;
   final Stats stats;
+  final boolean preferLowMemoryConfig;
+  final boolean cacheIntermediates;
   final Map<Object, Request> targetToRequest = new WeakHashMap<Object, Request>();
   final ReferenceQueue<Object> referenceQueue;
   final CleanupThread cleanupThread;
+  final ComponentCallbacks trimCallbacks;
 
   boolean debugging;
   boolean shutdown;
 
-  Picasso(Context context, Dispatcher dispatcher, Cache cache, Listener listener, Stats stats,
-      boolean debugging) {
+  Picasso(Context context, Dispatcher dispatcher, Cache cache, BitmapPool bitmapPool,
+      DiskResultCache diskResultCache, DownloadCache downloadCache, DecodeBudget decodeBudget,
+      Listener listener, EventDispatcher events, Stats stats, boolean preferLowMemoryConfig,
+      boolean cacheIntermediates, boolean debugging) {
     this.context = context;
     this.dispatcher = dispatcher;
     this.cache = cache;
+    this.bitmapPool = bitmapPool;
+    this.diskResultCache = diskResultCache;
+    this.downloadCache = downloadCache;
+    this.decodeBudget = decodeBudget;
     this.listener = listener;
+    this.events = events;
     this.stats = stats;
+    this.preferLowMemoryConfig = preferLowMemoryConfig;
+    this.cacheIntermediates = cacheIntermediates;
     this.debugging = debugging;
     this.referenceQueue = new ReferenceQueue<Object>();
     this.cleanupThread = new CleanupThread(referenceQueue, HANDLER);
     this.cleanupThread.start();
+    this.trimCallbacks =
+        SDK_INT >= ICE_CREAM_SANDWICH ? TrimCallbacks.register(context, dispatcher) : null;
   }
 
   /** Cancel any existing requests for the specified target {@link ImageView}. */
@@ -112,6 +138,33 @@ public class Picasso {
     cancelExistingRequest(target);
   }
 
+  /**
+   * Pause existing requests with the given tag. Requests with this tag which have not started are
+   * held back, as are new requests submitted with it, until {@link #resumeTag(Object)} is called.
+   * A typical use is pausing the requests of a list while it is being flung.
+   *
+   * @see RequestBuilder#tag(Object)
+   */
+  public void pauseTag(Object tag) {
+    if (tag == null) {
+      throw new IllegalArgumentException("Tag must not be null.");
+    }
+    dispatcher.dispatchPauseTag(tag);
+  }
+
+  /**
+   * Resume paused requests with the given tag. Requests which were cancelled while paused, for
+   * example because their target was reused for another image, are dropped.
+   *
+   * @see #pauseTag(Object)
+   */
+  public void resumeTag(Object tag) {
+    if (tag == null) {
+      throw new IllegalArgumentException("Tag must not be null.");
+    }
+    dispatcher.dispatchResumeTag(tag);
+  }
+
   /**
    * Start an image request using the specified URI.
    * <p>
@@ -204,8 +257,14 @@ public class Picasso {
       return;
     }
     cache.clear();
+    if (trimCallbacks != null) {
+      TrimCallbacks.unregister(context, trimCallbacks);
+    }
     cleanupThread.shutdown();
     stats.shutdown();
+    if (events != null) {
+      events.shutdown();
+    }
     dispatcher.shutdown();
     if (this == singleton) {
       singleton = null;
@@ -215,10 +274,13 @@ public class Picasso {
 
   void enqueueAndSubmit(Request request) {
     enqueue(request);
-    dispatcher.dispatchSubmit(request);
+    submit(request);
   }
 
   void submit(Request request) {
+    if (events != null) {
+      events.requestSubmitted(request);
+    }
     dispatcher.dispatchSubmit(request);
   }
 
@@ -230,10 +292,13 @@ public class Picasso {
     }
   }
 
-  Bitmap quickMemoryCacheCheck(String key) {
+  Bitmap quickMemoryCacheCheck(RequestKey key) {
     Bitmap cached = cache.get(key);
     if (cached != null) {
       stats.cacheHit();
+      if (events != null) {
+        events.memoryHit(key);
+      }
     }
     return cached;
   }
@@ -253,7 +318,11 @@ public class Picasso {
       if (join.isCancelled()) {
         continue;
       }
-      targetToRequest.remove(join.getTarget());
+      Object target = join.getTarget();
+      if (!join.willReplay && targetToRequest.get(target) == join) {
+        // A thumbnail shares its target with the request which is still tracked for it.
+        targetToRequest.remove(target);
+      }
       if (result != null) {
         join.complete(result, from);
       } else {
@@ -261,11 +330,24 @@ public class Picasso {
       }
     }
 
+    if (result != null) {
+      hunter.deliveredAt = System.nanoTime();
+      stats.hunterDelivered(hunter);
+      if (events != null) {
+        events.delivered(hunter.getKey(), from);
+      }
+    }
+
     if (listener != null && exception != null) {
       listener.onImageLoadFailed(this, uri, exception);
     }
   }
 
+  /** Cancels a request which has no target, such as one submitted by {@link Prefetcher}. */
+  void cancelFetch(Request request) {
+    cancelExistingRequest(request);
+  }
+
   private void cancelExistingRequest(Object target) {
     Request existing = targetToRequest.remove(target);
     cancelExistingRequest(existing);
@@ -275,6 +357,9 @@ public class Picasso {
     if (existing != null) {
       existing.cancel();
       dispatcher.dispatchCancel(existing);
+      if (events != null) {
+        events.requestCancelled(existing.getKey());
+      }
     }
   }
 
@@ -336,6 +421,37 @@ public class Picasso {
     return singleton;
   }
 
+  /** Forwards memory pressure to the dispatcher, which trims the memory cache. */
+  @TargetApi(ICE_CREAM_SANDWICH)
+  private static class TrimCallbacks implements ComponentCallbacks2 {
+    private final Dispatcher dispatcher;
+
+    TrimCallbacks(Dispatcher dispatcher) {
+      this.dispatcher = dispatcher;
+    }
+
+    static ComponentCallbacks register(Context context, Dispatcher dispatcher) {
+      TrimCallbacks callbacks = new TrimCallbacks(dispatcher);
+      context.registerComponentCallbacks(callbacks);
+      return callbacks;
+    }
+
+    static void unregister(Context context, ComponentCallbacks callbacks) {
+      context.unregisterComponentCallbacks(callbacks);
+    }
+
+    @Override public void onTrimMemory(int level) {
+      dispatcher.dispatchTrimMemory(level);
+    }
+
+    @Override public void onLowMemory() {
+      dispatcher.dispatchTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override public void onConfigurationChanged(Configuration newConfig) {
+    }
+  }
+
   /** Fluent API for creating {@link Picasso} instances. */
   @SuppressWarnings("UnusedDeclaration") // Public API.
   public static class Builder {
@@ -343,7 +459,17 @@ public class Picasso {
     private Downloader downloader;
     private ExecutorService service;
     private Cache cache;
+    private BitmapPool bitmapPool;
+    private DiskResultCache diskResultCache;
+    private DownloadCache downloadCache;
+    private DecodeBudget decodeBudget;
     private Listener listener;
+    private EventListener eventListener;
+    private int minNetworkThreads;
+    private int maxNetworkThreads;
+    private boolean spillOnTrim;
+    private boolean preferLowMemoryConfig;
+    private boolean cacheIntermediates;
     private boolean debugging;
 
     /** Start building a new {@link Picasso} instance. */
@@ -390,6 +516,128 @@ public class Picasso {
       return this;
     }
 
+    /**
+     * Specify a pool of bitmaps which are reused as decode targets. Only the intermediate images
+     * which Picasso creates and discards while transforming a request are added to the pool, so
+     * bitmaps which were delivered or cached are never reused.
+     */
+    public Builder bitmapPool(BitmapPool bitmapPool) {
+      if (bitmapPool == null) {
+        throw new IllegalArgumentException("Bitmap pool must not be null.");
+      }
+      if (this.bitmapPool != null) {
+        throw new IllegalStateException("Bitmap pool already set.");
+      }
+      this.bitmapPool = bitmapPool;
+      return this;
+    }
+
+    /**
+     * Store final, resized and transformed images in {@code directory}, using at most
+     * {@code maxSize} bytes. Requests with no resizing, rotation or transformations are never
+     * stored since their original is already available from its source or the HTTP cache.
+     */
+    public Builder diskResultCache(File directory, long maxSize) {
+      if (directory == null) {
+        throw new IllegalArgumentException("Directory must not be null.");
+      }
+      if (maxSize <= 0) {
+        throw new IllegalArgumentException("Max size must be positive.");
+      }
+      if (this.diskResultCache != null) {
+        throw new IllegalStateException("Disk result cache already set.");
+      }
+      this.diskResultCache = new DiskResultCache(directory, maxSize);
+      return this;
+    }
+
+    /**
+     * Store downloaded images as they were received in {@code directory}, using at most
+     * {@code maxSize} bytes, and read them back from there instead of downloading them again. This
+     * works whether or not the {@link Downloader} has an HTTP cache. Entries do not expire, so
+     * only use it for URLs whose image never changes.
+     */
+    public Builder downloadCache(File directory, long maxSize) {
+      if (directory == null) {
+        throw new IllegalArgumentException("Directory must not be null.");
+      }
+      if (maxSize <= 0) {
+        throw new IllegalArgumentException("Max size must be positive.");
+      }
+      if (this.downloadCache != null) {
+        throw new IllegalStateException("Download cache already set.");
+      }
+      this.downloadCache = new DownloadCache(directory, maxSize);
+      return this;
+    }
+
+    /**
+     * Whether transformed images which the memory cache evicts under memory pressure are written
+     * to the disk result cache first, so that they are read back rather than loaded and
+     * transformed again. Has no effect without {@link #diskResultCache(File, long)}.
+     */
+    public Builder spillOnTrim(boolean spillOnTrim) {
+      this.spillOnTrim = spillOnTrim;
+      return this;
+    }
+
+    /**
+     * Specify how many bytes of bitmaps may be held by decodes and transformations in progress.
+     * Work is admitted concurrently while its estimated size fits. An image larger than the whole
+     * budget is processed once nothing else is. Defaults to an eighth of the maximum heap size.
+     */
+    public Builder decodeMemoryBudget(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("Decode memory budget must be positive.");
+      }
+      if (this.decodeBudget != null) {
+        throw new IllegalStateException("Decode memory budget already set.");
+      }
+      this.decodeBudget = new DecodeBudget(maxBytes);
+      return this;
+    }
+
+    /**
+     * Size the default network executor from the throughput it measures, keeping between
+     * {@code minThreads} and {@code maxThreads} threads. The network type only picks the starting
+     * point. Has no effect on an executor supplied with {@link #executor(ExecutorService)}.
+     */
+    public Builder adaptiveThreadCount(int minThreads, int maxThreads) {
+      if (minThreads < 1) {
+        throw new IllegalArgumentException("Minimum thread count must be positive.");
+      }
+      if (maxThreads < minThreads) {
+        throw new IllegalArgumentException("Maximum thread count must not be below the minimum.");
+      }
+      if (this.maxNetworkThreads != 0) {
+        throw new IllegalStateException("Adaptive thread count already set.");
+      }
+      this.minNetworkThreads = minThreads;
+      this.maxNetworkThreads = maxThreads;
+      return this;
+    }
+
+    /**
+     * Whether images which cannot be transparent, such as JPEGs, are decoded to
+     * {@link Bitmap.Config#RGB_565} rather than {@link Bitmap.Config#ARGB_8888}, halving their
+     * memory at the cost of color depth. Requests which set a config with
+     * {@link RequestBuilder#config(Bitmap.Config)} are not affected.
+     */
+    public Builder preferLowMemoryConfig(boolean preferLowMemoryConfig) {
+      this.preferLowMemoryConfig = preferLowMemoryConfig;
+      return this;
+    }
+
+    /**
+     * Whether the resized image which custom transformations start from is also put in the memory
+     * cache. Requests for the same image with other transformations then only apply their own.
+     * This costs a copy of the resized image for every transformed load.
+     */
+    public Builder cacheIntermediates(boolean cacheIntermediates) {
+      this.cacheIntermediates = cacheIntermediates;
+      return this;
+    }
+
     /** Specify a listener for interesting events. */
     public Builder listener(Listener listener) {
       if (listener == null) {
@@ -402,6 +650,21 @@ public class Picasso {
       return this;
     }
 
+    /**
+     * Specify a listener for the events of loading each image, such as cache hits, fetches and
+     * decodes, with their timestamps. Events are delivered on a background thread.
+     */
+    public Builder eventListener(EventListener eventListener) {
+      if (eventListener == null) {
+        throw new IllegalArgumentException("Event listener must not be null.");
+      }
+      if (this.eventListener != null) {
+        throw new IllegalStateException("Event listener already set.");
+      }
+      this.eventListener = eventListener;
+      return this;
+    }
+
     /** Whether debugging is enabled or not. */
     public Builder debugging(boolean debugging) {
       this.debugging = debugging;
@@ -415,26 +678,70 @@ public class Picasso {
       if (downloader == null) {
         downloader = Utils.createDefaultDownloader(context);
       }
+      // Loads of one image at different sizes share a single download.
+      Downloader coalescingDownloader = new CoalescingDownloader(downloader);
       if (cache == null) {
-        cache = new LruCache(context);
+        cache = new ConcurrentLruCache(context);
       }
+      // A user-supplied executor runs every stage, otherwise each stage gets a pool of its own.
+      ExecutorService localService = null;
+      ExecutorService transformService = null;
+      PicassoExecutorService networkService = null;
       if (service == null) {
-        service = new PicassoExecutorService();
+        networkService = new PicassoExecutorService();
+        if (maxNetworkThreads != 0) {
+          networkService.enableAdaptiveThreadCount(minNetworkThreads, maxNetworkThreads);
+        }
+        service = networkService;
+        localService = new PicassoExecutorService(PicassoExecutorService.LOCAL_THREAD_COUNT);
+        transformService =
+            new PicassoExecutorService(Runtime.getRuntime().availableProcessors());
+      }
+      if (decodeBudget == null) {
+        decodeBudget = new DecodeBudget(Runtime.getRuntime().maxMemory() / 8);
       }
 
-      Stats stats = new Stats(cache);
+      if (diskResultCache != null) {
+        // Encoding and writing the results would otherwise hold up the hunters and the dispatcher.
+        diskResultCache.spillExecutor = localService != null ? localService : service;
+      }
+      if (spillOnTrim && diskResultCache != null) {
+        if (cache instanceof ConcurrentLruCache) {
+          ((ConcurrentLruCache) cache).spillCache = diskResultCache;
+        } else if (cache instanceof LruCache) {
+          ((LruCache) cache).spillCache = diskResultCache;
+        }
+      }
+
+      Stats stats = new Stats(cache, bitmapPool, decodeBudget, networkService);
+      EventDispatcher events = eventListener != null ? new EventDispatcher(eventListener) : null;
 
-      Dispatcher dispatcher = new Dispatcher(context, service, HANDLER, downloader, cache);
+      Dispatcher dispatcher = new Dispatcher(context, service, localService, transformService,
+          HANDLER, coalescingDownloader, cache, bitmapPool);
 
-      return new Picasso(context, dispatcher, cache, listener, stats, debugging);
+      return new Picasso(context, dispatcher, cache, bitmapPool, diskResultCache, downloadCache,
+          decodeBudget, listener, events, stats, preferLowMemoryConfig, cacheIntermediates,
+          debugging);
     }
   }
 
+  /**
+   * The priority of a request. Higher priorities run first and requests of equal priority run
+   * newest first.
+   */
+  public enum Priority {
+    LOW,
+    NORMAL,
+    HIGH
+  }
+
   /** Describes where the image was loaded from. */
   public enum LoadedFrom {
     MEMORY(Color.GREEN),
     DISK(Color.YELLOW),
-    NETWORK(Color.RED);
+    NETWORK(Color.RED),
+    /** Loaded already resized and transformed from the disk result cache. */
+    DISK_RESULT(Color.BLUE);
 
     final int debugColor;
 
@@ -15,7 +15,9 @@
  */
 package com.squareup.picasso;
 
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Rect;
 
 class PicassoBitmapOptions extends BitmapFactory.Options {
   int targetWidth;
@@ -32,4 +34,42 @@ class PicassoBitmapOptions extends BitmapFactory.Options {
   boolean hasRotationPivot;
 
   int exifRotation;
+
+  /** Whether {@code inDensity} and {@code inTargetDensity} scale the decode to the target size. */
+  boolean densityScaled;
+
+  /** The part of the encoded image to decode, or {@code null} for all of it. */
+  Rect region;
+
+  /** The config to decode to, or {@code null} to decide from {@link #preferLowMemoryConfig}. */
+  Bitmap.Config config;
+  /** Whether images which are known to be opaque are decoded to {@code RGB_565}. */
+  boolean preferLowMemoryConfig;
+
+  PicassoBitmapOptions() {
+  }
+
+  /** Copies what was requested of {@code options}, but not what a decode left in them. */
+  PicassoBitmapOptions(PicassoBitmapOptions options) {
+    inJustDecodeBounds = options.inJustDecodeBounds;
+    targetWidth = options.targetWidth;
+    targetHeight = options.targetHeight;
+    centerCrop = options.centerCrop;
+    centerInside = options.centerInside;
+    targetScaleX = options.targetScaleX;
+    targetScaleY = options.targetScaleY;
+    targetRotation = options.targetRotation;
+    targetPivotX = options.targetPivotX;
+    targetPivotY = options.targetPivotY;
+    hasRotationPivot = options.hasRotationPivot;
+    region = options.region;
+    config = options.config;
+    preferLowMemoryConfig = options.preferLowMemoryConfig;
+  }
+
+  /** Whether the decoded image still has to be resized, rotated or cropped. */
+  boolean isTransformed() {
+    return targetWidth != 0 || targetRotation != 0 || targetScaleX != 0 || region != null
+        || exifRotation != 0;
+  }
 }
@@ -2,10 +2,15 @@ package com.squareup.picasso;
 
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.SystemClock;
 import android.telephony.TelephonyManager;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The default {@link java.util.concurrent.ExecutorService} used for new {@link Picasso} instances.
@@ -15,10 +20,82 @@ import java.util.concurrent.TimeUnit;
  */
 class PicassoExecutorService extends ThreadPoolExecutor {
   private static final int DEFAULT_THREAD_COUNT = 3;
+  /** Threads for reading files, resources and content providers, which rarely stall for long. */
+  static final int LOCAL_THREAD_COUNT = 2;
+
+  private final AtomicLong sequence = new AtomicLong();
+  private volatile AdaptiveThreadCount adaptive;
 
   PicassoExecutorService() {
-    super(DEFAULT_THREAD_COUNT, DEFAULT_THREAD_COUNT, 0, TimeUnit.MILLISECONDS,
-        new LinkedBlockingQueue<Runnable>(), new Utils.PicassoThreadFactory());
+    this(DEFAULT_THREAD_COUNT);
+  }
+
+  PicassoExecutorService(int threadCount) {
+    super(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), new Utils.PicassoThreadFactory());
+  }
+
+  /**
+   * Lets the thread count follow the measured throughput within {@code minThreads} and
+   * {@code maxThreads}. Network type changes still pick the starting point.
+   */
+  void enableAdaptiveThreadCount(int minThreads, int maxThreads) {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(minThreads, maxThreads);
+    resize(adaptive.restart(getMaximumPoolSize(), SystemClock.uptimeMillis()));
+    this.adaptive = adaptive;
+  }
+
+  /** Returns the controller sizing this executor, or {@code null} if its size is static. */
+  AdaptiveThreadCount getAdaptiveThreadCount() {
+    return adaptive;
+  }
+
+  @Override protected void afterExecute(Runnable r, Throwable t) {
+    AdaptiveThreadCount adaptive = this.adaptive;
+    if (adaptive == null) {
+      return;
+    }
+    BitmapHunter hunter = r instanceof PicassoFutureTask ? ((PicassoFutureTask) r).hunter : null;
+    long fetchedBytes = hunter != null ? hunter.fetchedBytes : -1;
+    int threadCount = adaptive.record(fetchedBytes, getMaximumPoolSize(), getQueue().size(),
+        SystemClock.uptimeMillis());
+    if (threadCount > 0) {
+      resize(threadCount);
+    }
+  }
+
+  @Override public void execute(Runnable command) {
+    // The queue orders its elements so everything in it has to be a PicassoFutureTask.
+    if (!(command instanceof PicassoFutureTask)) {
+      command = new PicassoFutureTask(command, null, sequence.incrementAndGet());
+    }
+    super.execute(command);
+  }
+
+  @Override public Future<?> submit(Runnable task) {
+    BitmapHunter hunter = task instanceof BitmapHunter ? (BitmapHunter) task : null;
+    PicassoFutureTask ftask = new PicassoFutureTask(task, hunter, sequence.incrementAndGet());
+    execute(ftask);
+    return ftask;
+  }
+
+  /**
+   * Raises the priority of a hunter which may still be waiting in the queue. The task is taken out
+   * of the queue while its priority changes since the queue does not reorder elements in place.
+   */
+  void raisePriority(BitmapHunter hunter, Picasso.Priority priority) {
+    if (!(hunter.future instanceof PicassoFutureTask)) {
+      hunter.priority = priority;
+      return;
+    }
+    PicassoFutureTask task = (PicassoFutureTask) hunter.future;
+    BlockingQueue<Runnable> queue = getQueue();
+    boolean queued = queue.remove(task);
+    hunter.priority = priority;
+    if (queued) {
+      task.sequence = sequence.incrementAndGet();
+      queue.offer(task);
+    }
   }
 
   void adjustThreadCount(NetworkInfo info) {
@@ -56,7 +133,47 @@ class PicassoExecutorService extends ThreadPoolExecutor {
   }
 
   private void setThreadCount(int threadCount) {
-    setCorePoolSize(threadCount);
-    setMaximumPoolSize(threadCount);
+    AdaptiveThreadCount adaptive = this.adaptive;
+    if (adaptive != null) {
+      threadCount = adaptive.restart(threadCount, SystemClock.uptimeMillis());
+    }
+    resize(threadCount);
+  }
+
+  private void resize(int threadCount) {
+    // The core size may never exceed the maximum, so move them in the right order.
+    if (threadCount > getMaximumPoolSize()) {
+      setMaximumPoolSize(threadCount);
+      setCorePoolSize(threadCount);
+    } else {
+      setCorePoolSize(threadCount);
+      setMaximumPoolSize(threadCount);
+    }
+  }
+
+  static final class PicassoFutureTask extends FutureTask<Void>
+      implements Comparable<PicassoFutureTask> {
+    final BitmapHunter hunter;
+    long sequence; // Only changed while the task is out of the queue.
+
+    PicassoFutureTask(Runnable runnable, BitmapHunter hunter, long sequence) {
+      super(runnable, null);
+      this.hunter = hunter;
+      this.sequence = sequence;
+    }
+
+    @Override public int compareTo(PicassoFutureTask other) {
+      int priority = getPriority().ordinal();
+      int otherPriority = other.getPriority().ordinal();
+      if (priority != otherPriority) {
+        return priority > otherPriority ? -1 : 1;
+      }
+      // Newest first so that the requests for what is on screen now win.
+      return sequence > other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+
+    private Picasso.Priority getPriority() {
+      return hunter != null ? hunter.priority : Picasso.Priority.NORMAL;
+    }
   }
 }
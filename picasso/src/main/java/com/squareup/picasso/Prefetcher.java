@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.widget.AbsListView;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fetches the images of the positions just beyond the visible ones of a list, in the direction it
+ * scrolls, so that they are in the memory cache by the time they are shown.
+ * <p/>
+ * The requests are built like the ones which load the cells, including their size and
+ * transformations, so that the cells find the fetched images with their own cache key. Fetches
+ * default to {@link Picasso.Priority#LOW low} priority, so the images of visible cells load first.
+ * Fetches for positions which the list has scrolled past are cancelled.
+ * <p/>
+ * Set it as the list's {@link AbsListView.OnScrollListener}, or forward
+ * {@link #onScroll(AbsListView, int, int, int)} from your own, or report the visible positions
+ * with {@link #setVisiblePositions(int, int)}. All methods must be called from the main thread.
+ */
+public final class Prefetcher implements AbsListView.OnScrollListener {
+  private final Picasso picasso;
+  private final List<RequestBuilder> requests;
+  private final int lookahead;
+  /** Running fetches by position. */
+  final Map<Integer, Request> fetches = new LinkedHashMap<Integer, Request>();
+  /** Positions whose fetch finished, which are not fetched again while they stay in range. */
+  final Set<Integer> finished = new HashSet<Integer>();
+
+  private int firstVisible = -1;
+  private boolean forward = true;
+
+  /**
+   * Create a prefetcher which fetches up to {@code lookahead} positions ahead of the visible ones.
+   * {@code requests} holds the request for every adapter position, or {@code null} for positions
+   * without an image. It may build its requests on demand.
+   */
+  public Prefetcher(Picasso picasso, List<RequestBuilder> requests, int lookahead) {
+    if (picasso == null) {
+      throw new IllegalArgumentException("Picasso must not be null.");
+    }
+    if (requests == null) {
+      throw new IllegalArgumentException("Requests must not be null.");
+    }
+    if (lookahead <= 0) {
+      throw new IllegalArgumentException("Lookahead must be positive.");
+    }
+    this.picasso = picasso;
+    this.requests = requests;
+    this.lookahead = lookahead;
+  }
+
+  @Override public void onScrollStateChanged(AbsListView view, int scrollState) {
+  }
+
+  @Override public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+      int totalItemCount) {
+    if (visibleItemCount > 0) {
+      setVisiblePositions(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
+    }
+  }
+
+  /**
+   * Report that the positions from {@code first} to {@code last} are visible. Fetches the
+   * positions ahead of them in the direction of the last scroll and cancels the fetches which
+   * fell behind.
+   */
+  public void setVisiblePositions(int first, int last) {
+    if (first < 0 || last < first) {
+      throw new IllegalArgumentException("Invalid visible positions " + first + "-" + last + ".");
+    }
+    if (first != firstVisible) {
+      // Keep the direction while the list does not move, e.g. when it is laid out again.
+      forward = firstVisible == -1 || first > firstVisible;
+      firstVisible = first;
+    }
+    int start = forward ? last + 1 : Math.max(0, first - lookahead);
+    int end = Math.min(requests.size(), forward ? last + 1 + lookahead : first);
+
+    for (Iterator<Map.Entry<Integer, Request>> i = fetches.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<Integer, Request> entry = i.next();
+      int position = entry.getKey();
+      // Fetches which became visible keep running for the cells which now wait for them.
+      if ((position < start || position >= end) && (position < first || position > last)) {
+        picasso.cancelFetch(entry.getValue());
+        i.remove();
+      }
+    }
+    for (Iterator<Integer> i = finished.iterator(); i.hasNext(); ) {
+      int position = i.next();
+      if ((position < start || position >= end) && (position < first || position > last)) {
+        i.remove();
+      }
+    }
+
+    for (int position = start; position < end; position++) {
+      if (!fetches.containsKey(position) && !finished.contains(position)) {
+        fetch(position);
+      }
+    }
+  }
+
+  /** Cancels all fetches. */
+  public void cancel() {
+    for (Request request : fetches.values()) {
+      picasso.cancelFetch(request);
+    }
+    fetches.clear();
+    finished.clear();
+    firstVisible = -1;
+    forward = true;
+  }
+
+  private void fetch(final int position) {
+    RequestBuilder builder = requests.get(position);
+    if (builder == null) {
+      return;
+    }
+    Request request = builder.createFetchRequest(new Callback() {
+      @Override public void onSuccess() {
+        finish(position);
+      }
+
+      @Override public void onError() {
+        finish(position);
+      }
+    });
+    if (!request.skipCache && isCached(request.getKey())) {
+      return;
+    }
+    picasso.enqueueAndSubmit(request);
+    fetches.put(position, request);
+  }
+
+  /** Forgets the finished fetch of {@code position}, so that it is no longer cancelled. */
+  private void finish(int position) {
+    if (fetches.remove(position) != null) {
+      finished.add(position);
+    }
+  }
+
+  /** Checks the memory cache without counting a hit or a miss, where the cache allows it. */
+  private boolean isCached(RequestKey key) {
+    Cache cache = picasso.cache;
+    if (cache instanceof ConcurrentLruCache) {
+      return ((ConcurrentLruCache) cache).contains(key);
+    }
+    if (cache instanceof LruCache) {
+      return ((LruCache) cache).contains(key);
+    }
+    return cache.get(key) != null;
+  }
+}
@@ -43,13 +43,16 @@ abstract class Request<T> {
   final boolean noFade;
   final int errorResId;
   final Drawable errorDrawable;
-  final String key;
+  final RequestKey key;
 
+  Picasso.Priority priority = Picasso.Priority.NORMAL;
+  Object tag;
   boolean cancelled;
+  boolean willReplay; // Failed while offline, and submitted again once connectivity returns.
 
   Request(Picasso picasso, Uri uri, int resourceId, T target, PicassoBitmapOptions options,
       List<Transformation> transformations, boolean skipCache, boolean noFade, int errorResId,
-      Drawable errorDrawable, String key) {
+      Drawable errorDrawable, RequestKey key) {
     this.picasso = picasso;
     this.uri = uri;
     this.resourceId = resourceId;
@@ -79,7 +82,7 @@ abstract class Request<T> {
     return uri;
   }
 
-  String getKey() {
+  RequestKey getKey() {
     return key;
   }
 
@@ -87,6 +90,14 @@ abstract class Request<T> {
     return resourceId;
   }
 
+  Picasso.Priority getPriority() {
+    return priority;
+  }
+
+  Object getTag() {
+    return tag;
+  }
+
   boolean isCancelled() {
     return cancelled;
   }
@@ -17,6 +17,7 @@ package com.squareup.picasso;
 
 import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.widget.ImageView;
@@ -41,6 +42,9 @@ public class RequestBuilder {
   private List<Transformation> transformations;
   private boolean skipMemoryCache;
   private boolean noFade;
+  private Picasso.Priority priority;
+  private Object tag;
+  private RequestBuilder thumbnail;
   private boolean deferred;
   private int placeholderResId;
   private Drawable placeholderDrawable;
@@ -55,6 +59,12 @@ public class RequestBuilder {
     this.picasso = picasso;
     this.uri = uri;
     this.resourceId = resourceId;
+    if (picasso.preferLowMemoryConfig) {
+      // The bounds pass tells which images are opaque.
+      PicassoBitmapOptions options = getOptions();
+      options.preferLowMemoryConfig = true;
+      options.inJustDecodeBounds = true;
+    }
   }
 
   @TestOnly RequestBuilder() {
@@ -213,6 +223,45 @@ public class RequestBuilder {
     return this;
   }
 
+  /**
+   * Decode only the specified region of the image, given in pixels of the full image. When
+   * combined with {@link #resize(int, int)} the region is sampled down while decoding, so a tile
+   * of a very large image can be shown at any zoom level without decoding the rest of it.
+   * <p/>
+   * Each region is cached separately.
+   */
+  public RequestBuilder region(Rect region) {
+    if (region == null) {
+      throw new IllegalArgumentException("Region must not be null.");
+    }
+    if (region.isEmpty()) {
+      throw new IllegalArgumentException("Region must not be empty.");
+    }
+    PicassoBitmapOptions options = getOptions();
+    if (options.region != null) {
+      throw new IllegalStateException("Region already set.");
+    }
+    options.region = new Rect(region);
+    return this;
+  }
+
+  /**
+   * Decode the image to {@code config} rather than {@link Bitmap.Config#ARGB_8888}, such as
+   * {@link Bitmap.Config#RGB_565} for an opaque image at half the memory. Each config is cached
+   * separately.
+   */
+  public RequestBuilder config(Bitmap.Config config) {
+    if (config == null) {
+      throw new IllegalArgumentException("Config must not be null.");
+    }
+    PicassoBitmapOptions options = getOptions();
+    if (options.config != null) {
+      throw new IllegalStateException("Config already set.");
+    }
+    options.config = config;
+    return this;
+  }
+
   /** Scale the image using the specified factor. */
   public RequestBuilder scale(float factor) {
     if (factor != 1) {
@@ -293,6 +342,60 @@ public class RequestBuilder {
     return this;
   }
 
+  /**
+   * Set the priority of this request. Requests default to {@link Picasso.Priority#NORMAL}, except
+   * for {@link #fetch()} which defaults to {@link Picasso.Priority#LOW}.
+   */
+  public RequestBuilder priority(Picasso.Priority priority) {
+    if (priority == null) {
+      throw new IllegalArgumentException("Priority must not be null.");
+    }
+    if (this.priority != null) {
+      throw new IllegalStateException("Priority already set.");
+    }
+    this.priority = priority;
+    return this;
+  }
+
+  /**
+   * Assign a tag to this request. Tags are an easy way to logically associate related requests
+   * that can be managed together, e.g. paused and resumed with {@link Picasso#pauseTag(Object)}
+   * and {@link Picasso#resumeTag(Object)}.
+   */
+  public RequestBuilder tag(Object tag) {
+    if (tag == null) {
+      throw new IllegalArgumentException("Tag must not be null.");
+    }
+    if (this.tag != null) {
+      throw new IllegalStateException("Tag already set.");
+    }
+    this.tag = tag;
+    return this;
+  }
+
+  /**
+   * Show the result of another request until this image has loaded, for example a smaller
+   * {@link #resize(int, int) resize} of the same image which a list already loaded, or a separate
+   * thumbnail URL. A thumbnail in the memory cache replaces the placeholder immediately. Otherwise
+   * it is loaded at {@link Picasso.Priority#HIGH high} priority, unless it specifies its own, and
+   * shown if it arrives before this image, which then fades in over it.
+   * <p/>
+   * <em>Note:</em> Thumbnails are only used when the target is an {@link ImageView}.
+   */
+  public RequestBuilder thumbnail(RequestBuilder thumbnail) {
+    if (thumbnail == null) {
+      throw new IllegalArgumentException("Thumbnail must not be null.");
+    }
+    if (thumbnail.deferred) {
+      throw new IllegalArgumentException("Thumbnail cannot use fit.");
+    }
+    if (this.thumbnail != null) {
+      throw new IllegalStateException("Thumbnail already set.");
+    }
+    this.thumbnail = thumbnail;
+    return this;
+  }
+
   /** Synchronously fulfill this request. Must not be called from the main thread. */
   public Bitmap get() throws IOException {
     checkNotMain();
@@ -312,10 +415,20 @@ public class RequestBuilder {
    * warm up the cache with an image.
    */
   public void fetch() {
-    String requestKey = createKey(uri, resourceId, options, transformations);
-    Request request =
-        new FetchRequest(picasso, uri, resourceId, options, transformations, skipMemoryCache);
-    picasso.enqueueAndSubmit(request);
+    picasso.enqueueAndSubmit(createFetchRequest(null));
+  }
+
+  /**
+   * Creates the request which {@link #fetch()} submits. The optional {@code callback} is told when
+   * the fetch finished.
+   */
+  Request createFetchRequest(Callback callback) {
+    RequestKey requestKey = createKey(uri, resourceId, options, transformations);
+    Request request = new FetchRequest(picasso, uri, resourceId, options, transformations,
+        skipMemoryCache, requestKey, callback);
+    request.priority = priority != null ? priority : Picasso.Priority.LOW;
+    request.tag = tag;
+    return request;
   }
 
   /**
@@ -336,7 +449,7 @@ public class RequestBuilder {
       return;
     }
 
-    String requestKey = createKey(uri, resourceId, options, transformations);
+    RequestKey requestKey = createKey(uri, resourceId, options, transformations);
 
     if (!skipMemoryCache) {
       Bitmap bitmap = picasso.quickMemoryCacheCheck(requestKey);
@@ -349,6 +462,7 @@ public class RequestBuilder {
 
     Request request = new TargetRequest(picasso, uri, resourceId, target, options, transformations,
         skipMemoryCache, requestKey);
+    setSchedulingOptions(request);
 
     picasso.enqueueAndSubmit(request);
   }
@@ -383,7 +497,7 @@ public class RequestBuilder {
       return;
     }
 
-    String requestKey = createKey(uri, resourceId, options, transformations);
+    RequestKey requestKey = createKey(uri, resourceId, options, transformations);
 
     if (!skipMemoryCache) {
       Bitmap bitmap = picasso.quickMemoryCacheCheck(requestKey);
@@ -408,7 +522,9 @@ public class RequestBuilder {
         request =
             new DeferredImageViewRequest(picasso, uri, resourceId, target, options, transformations,
                 skipMemoryCache, noFade, errorResId, errorDrawable, requestKey, callback);
+        setSchedulingOptions(request);
         picasso.enqueue(request);
+        loadThumbnail((ImageViewRequest) request, target);
         return;
       }
     }
@@ -417,7 +533,48 @@ public class RequestBuilder {
 
     request = new ImageViewRequest(picasso, uri, resourceId, target, options, transformations,
         skipMemoryCache, noFade, errorResId, errorDrawable, requestKey, callback);
+    setSchedulingOptions(request);
 
     picasso.enqueueAndSubmit(request);
+    loadThumbnail((ImageViewRequest) request, target);
+  }
+
+  /**
+   * Shows the thumbnail on {@code target} right away if it is in the memory cache, otherwise
+   * submits it on behalf of {@code request}, which cancels it once the full image is delivered.
+   */
+  private void loadThumbnail(ImageViewRequest request, ImageView target) {
+    RequestBuilder thumbnail = this.thumbnail;
+    if (thumbnail == null || (thumbnail.uri == null && thumbnail.resourceId == 0)) {
+      return;
+    }
+
+    RequestKey thumbnailKey = createKey(thumbnail.uri, thumbnail.resourceId, thumbnail.options,
+        thumbnail.transformations);
+
+    if (!thumbnail.skipMemoryCache) {
+      Bitmap bitmap = picasso.quickMemoryCacheCheck(thumbnailKey);
+      if (bitmap != null) {
+        PicassoDrawable.setBitmap(target, picasso.context, bitmap, MEMORY, noFade,
+            picasso.debugging);
+        return;
+      }
+    }
+
+    ThumbnailRequest thumbnailRequest = new ThumbnailRequest(picasso, thumbnail.uri,
+        thumbnail.resourceId, target, thumbnail.options, thumbnail.transformations,
+        thumbnail.skipMemoryCache, noFade, thumbnailKey);
+    thumbnailRequest.priority =
+        thumbnail.priority != null ? thumbnail.priority : Picasso.Priority.HIGH;
+    thumbnailRequest.tag = thumbnail.tag != null ? thumbnail.tag : tag;
+    request.thumbnail = thumbnailRequest;
+    picasso.submit(thumbnailRequest);
+  }
+
+  private void setSchedulingOptions(Request request) {
+    if (priority != null) {
+      request.priority = priority;
+    }
+    request.tag = tag;
   }
 }
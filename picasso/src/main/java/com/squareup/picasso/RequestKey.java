@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.net.Uri;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Identifies the image a request produces: its source, resizing, rotation and transformations.
+ * Requests with equal keys share a load and a cache entry.
+ * <p>
+ * Keys are built on the main thread for every request, so they hold the components themselves
+ * and a 64-bit hash of them rather than a string. {@link #toString()} renders the components for
+ * debugging.
+ */
+public final class RequestKey {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  private static final int KEY_PADDING = 50; // Determined by exact science.
+
+  private final Uri uri;
+  private final int resourceId;
+  private final float targetRotation;
+  private final boolean hasRotationPivot;
+  private final float targetPivotX;
+  private final float targetPivotY;
+  private final int targetWidth;
+  private final int targetHeight;
+  private final boolean hasRegion;
+  private final int regionLeft;
+  private final int regionTop;
+  private final int regionRight;
+  private final int regionBottom;
+  private final boolean centerCrop;
+  private final boolean centerInside;
+  private final float targetScaleX;
+  private final float targetScaleY;
+  private final Bitmap.Config config;
+  private final boolean preferLowMemoryConfig;
+  private final String[] transformationKeys;
+  private final long baseHash; // Of everything but the transformations.
+  private final long hash;
+
+  private String string;
+
+  RequestKey(Uri uri, int resourceId, PicassoBitmapOptions options,
+      List<Transformation> transformations) {
+    this.uri = uri;
+    this.resourceId = uri != null ? 0 : resourceId;
+    if (options != null) {
+      targetRotation = options.targetRotation;
+      hasRotationPivot = targetRotation != 0 && options.hasRotationPivot;
+      targetPivotX = hasRotationPivot ? options.targetPivotX : 0;
+      targetPivotY = hasRotationPivot ? options.targetPivotY : 0;
+      targetWidth = options.targetWidth;
+      targetHeight = targetWidth != 0 ? options.targetHeight : 0;
+      Rect region = options.region;
+      hasRegion = region != null;
+      regionLeft = hasRegion ? region.left : 0;
+      regionTop = hasRegion ? region.top : 0;
+      regionRight = hasRegion ? region.right : 0;
+      regionBottom = hasRegion ? region.bottom : 0;
+      centerCrop = options.centerCrop;
+      centerInside = options.centerInside;
+      targetScaleX = options.targetScaleX;
+      targetScaleY = targetScaleX != 0 ? options.targetScaleY : 0;
+      config = options.config;
+      preferLowMemoryConfig = config == null && options.preferLowMemoryConfig;
+    } else {
+      targetRotation = 0;
+      hasRotationPivot = false;
+      targetPivotX = 0;
+      targetPivotY = 0;
+      targetWidth = 0;
+      targetHeight = 0;
+      hasRegion = false;
+      regionLeft = 0;
+      regionTop = 0;
+      regionRight = 0;
+      regionBottom = 0;
+      centerCrop = false;
+      centerInside = false;
+      targetScaleX = 0;
+      targetScaleY = 0;
+      config = null;
+      preferLowMemoryConfig = false;
+    }
+
+    long hash = FNV_OFFSET_BASIS;
+    hash = mix(hash, uri != null ? uri.hashCode() : this.resourceId);
+    hash = mix(hash, Float.floatToIntBits(targetRotation));
+    hash = mix(hash, Float.floatToIntBits(targetPivotX));
+    hash = mix(hash, Float.floatToIntBits(targetPivotY));
+    hash = mix(hash, targetWidth);
+    hash = mix(hash, targetHeight);
+    hash = mix(hash, regionLeft);
+    hash = mix(hash, regionTop);
+    hash = mix(hash, regionRight);
+    hash = mix(hash, regionBottom);
+    int flags = (hasRotationPivot ? 1 : 0) | (hasRegion ? 2 : 0) | (centerCrop ? 4 : 0)
+        | (centerInside ? 8 : 0) | (preferLowMemoryConfig ? 16 : 0);
+    hash = mix(hash, flags);
+    hash = mix(hash, Float.floatToIntBits(targetScaleX));
+    hash = mix(hash, Float.floatToIntBits(targetScaleY));
+    hash = mix(hash, config != null ? config.ordinal() + 1 : 0);
+    this.baseHash = hash;
+
+    if (transformations != null && !transformations.isEmpty()) {
+      int count = transformations.size();
+      transformationKeys = new String[count];
+      for (int i = 0; i < count; i++) {
+        String key = transformations.get(i).key();
+        transformationKeys[i] = key;
+        hash = mix(hash, key.hashCode());
+      }
+    } else {
+      transformationKeys = null;
+    }
+    this.hash = hash;
+  }
+
+  /** Copies {@code key} with only the first {@code count} of its transformations. */
+  private RequestKey(RequestKey key, int count) {
+    uri = key.uri;
+    resourceId = key.resourceId;
+    targetRotation = key.targetRotation;
+    hasRotationPivot = key.hasRotationPivot;
+    targetPivotX = key.targetPivotX;
+    targetPivotY = key.targetPivotY;
+    targetWidth = key.targetWidth;
+    targetHeight = key.targetHeight;
+    hasRegion = key.hasRegion;
+    regionLeft = key.regionLeft;
+    regionTop = key.regionTop;
+    regionRight = key.regionRight;
+    regionBottom = key.regionBottom;
+    centerCrop = key.centerCrop;
+    centerInside = key.centerInside;
+    targetScaleX = key.targetScaleX;
+    targetScaleY = key.targetScaleY;
+    config = key.config;
+    preferLowMemoryConfig = key.preferLowMemoryConfig;
+    baseHash = key.baseHash;
+
+    long hash = baseHash;
+    if (count > 0) {
+      transformationKeys = new String[count];
+      for (int i = 0; i < count; i++) {
+        String transformationKey = key.transformationKeys[i];
+        transformationKeys[i] = transformationKey;
+        hash = mix(hash, transformationKey.hashCode());
+      }
+    } else {
+      transformationKeys = null;
+    }
+    this.hash = hash;
+  }
+
+  private static long mix(long hash, int value) {
+    return (hash ^ value) * FNV_PRIME;
+  }
+
+  /** Whether the image is resized, rotated or transformed rather than the source as it is. */
+  boolean isTransformed() {
+    return targetRotation != 0 || targetWidth != 0 || hasRegion || centerCrop || centerInside
+        || targetScaleX != 0 || transformationKeys != null;
+  }
+
+  /** Returns the number of custom transformations in this key. */
+  int transformationCount() {
+    return transformationKeys != null ? transformationKeys.length : 0;
+  }
+
+  /**
+   * Returns the key of the image this key's image is transformed from after its first
+   * {@code count} custom transformations.
+   */
+  RequestKey prefix(int count) {
+    if (count < 0 || count > transformationCount()) {
+      throw new IllegalArgumentException("Prefix of " + count + " transformations out of range.");
+    }
+    return count == transformationCount() ? this : new RequestKey(this, count);
+  }
+
+  /** A 64-bit hash of the components of this key. */
+  public long hash() {
+    return hash;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RequestKey)) {
+      return false;
+    }
+    RequestKey other = (RequestKey) o;
+    return hash == other.hash
+        && resourceId == other.resourceId
+        && Float.floatToIntBits(targetRotation) == Float.floatToIntBits(other.targetRotation)
+        && hasRotationPivot == other.hasRotationPivot
+        && Float.floatToIntBits(targetPivotX) == Float.floatToIntBits(other.targetPivotX)
+        && Float.floatToIntBits(targetPivotY) == Float.floatToIntBits(other.targetPivotY)
+        && targetWidth == other.targetWidth
+        && targetHeight == other.targetHeight
+        && hasRegion == other.hasRegion
+        && regionLeft == other.regionLeft
+        && regionTop == other.regionTop
+        && regionRight == other.regionRight
+        && regionBottom == other.regionBottom
+        && centerCrop == other.centerCrop
+        && centerInside == other.centerInside
+        && Float.floatToIntBits(targetScaleX) == Float.floatToIntBits(other.targetScaleX)
+        && Float.floatToIntBits(targetScaleY) == Float.floatToIntBits(other.targetScaleY)
+        && config == other.config
+        && preferLowMemoryConfig == other.preferLowMemoryConfig
+        && (uri != null ? uri.equals(other.uri) : other.uri == null)
+        && Arrays.equals(transformationKeys, other.transformationKeys);
+  }
+
+  @Override public int hashCode() {
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  /**
+   * Renders the components one per line. Only meant for debugging and for keying on disk, since
+   * it allocates the first time it is called.
+   */
+  @Override public String toString() {
+    String string = this.string;
+    if (string == null) {
+      string = render();
+      this.string = string;
+    }
+    return string;
+  }
+
+  private String render() {
+    StringBuilder builder;
+
+    if (uri != null) {
+      String path = uri.toString();
+      builder = new StringBuilder(path.length() + KEY_PADDING);
+      builder.append(path);
+    } else {
+      builder = new StringBuilder(KEY_PADDING);
+      builder.append(resourceId);
+    }
+    builder.append('\n');
+
+    if (targetRotation != 0) {
+      builder.append("rotation:").append(targetRotation);
+      if (hasRotationPivot) {
+        builder.append('@').append(targetPivotX).append('x').append(targetPivotY);
+      }
+      builder.append('\n');
+    }
+    if (targetWidth != 0) {
+      builder.append("resize:").append(targetWidth).append('x').append(targetHeight);
+      builder.append('\n');
+    }
+    if (hasRegion) {
+      builder.append("region:").append(regionLeft).append(',').append(regionTop).append(',')
+          .append(regionRight).append(',').append(regionBottom).append('\n');
+    }
+    if (centerCrop) {
+      builder.append("centerCrop\n");
+    }
+    if (centerInside) {
+      builder.append("centerInside\n");
+    }
+    if (targetScaleX != 0) {
+      builder.append("scale:").append(targetScaleX).append('x').append(targetScaleY);
+      builder.append('\n');
+    }
+    if (config != null) {
+      builder.append("config:").append(config.name()).append('\n');
+    }
+    if (preferLowMemoryConfig) {
+      builder.append("preferLowMemoryConfig\n");
+    }
+
+    if (transformationKeys != null) {
+      for (String transformationKey : transformationKeys) {
+        builder.append(transformationKey);
+        builder.append('\n');
+      }
+    }
+
+    return builder.toString();
+  }
+}
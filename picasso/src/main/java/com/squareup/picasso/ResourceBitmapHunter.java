@@ -21,6 +21,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static com.squareup.picasso.Picasso.LoadedFrom.DISK;
 
@@ -37,23 +38,31 @@ class ResourceBitmapHunter extends BitmapHunter {
 
   @Override Bitmap decode(Uri uri, PicassoBitmapOptions options, int retryCount)
       throws IOException {
+    loadedFrom = DISK;
     return decodeResource(context.getResources(), resourceId, options);
   }
 
-  @Override Picasso.LoadedFrom getLoadedFrom() {
-    return DISK;
-  }
-
   @Override String getName() {
     return Integer.toString(resourceId);
   }
 
   private Bitmap decodeResource(Resources resources, int resourceId,
-      PicassoBitmapOptions bitmapOptions) {
+      PicassoBitmapOptions bitmapOptions) throws IOException {
+    if (bitmapOptions != null && bitmapOptions.region != null) {
+      InputStream is = resources.openRawResource(resourceId);
+      try {
+        return decodeRegion(is, bitmapOptions);
+      } finally {
+        Utils.closeQuietly(is);
+      }
+    }
     if (bitmapOptions != null && bitmapOptions.inJustDecodeBounds) {
       BitmapFactory.decodeResource(resources, resourceId, bitmapOptions);
       calculateInSampleSize(bitmapOptions);
+      // Resources are already scaled to the display density, which must not be replaced.
+      clearDensityScaling(bitmapOptions);
     }
+    prepareDecode(bitmapOptions);
     return BitmapFactory.decodeResource(resources, resourceId, bitmapOptions);
   }
 }
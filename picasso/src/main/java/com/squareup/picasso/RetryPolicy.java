@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Spaces out the retries of failed network loads. The delay doubles with every consecutive failure
+ * of the same host, so that a host which is down is not hit again by every image it serves, and
+ * is jittered so that the retries of a screen full of images do not all fire at once. A load which
+ * succeeds resets the delay of its host.
+ */
+class RetryPolicy {
+  static final int BASE_DELAY = 500; // ms
+  static final int MAX_DELAY = 30 * 1000; // ms
+  private static final int MAX_HOSTS = 32;
+
+  private final Random random;
+  /** Consecutive failures by host, least recently failed first. */
+  final Map<String, Integer> hostFailures =
+      new LinkedHashMap<String, Integer>(MAX_HOSTS, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+          return size() > MAX_HOSTS;
+        }
+      };
+
+  RetryPolicy() {
+    this(new Random());
+  }
+
+  RetryPolicy(Random random) {
+    this.random = random;
+  }
+
+  /** Records a failed load of {@code uri} and returns the delay before retrying it, in ms. */
+  synchronized int failed(Uri uri) {
+    String host = hostOf(uri);
+    Integer previous = hostFailures.get(host);
+    int failures = previous != null ? previous + 1 : 1;
+    hostFailures.put(host, failures);
+
+    int delay = BASE_DELAY;
+    for (int i = 1; i < failures && delay < MAX_DELAY; i++) {
+      delay *= 2;
+    }
+    delay = Math.min(delay, MAX_DELAY);
+    // At least half of the delay, so that it still grows with every failure.
+    return delay / 2 + random.nextInt(delay / 2 + 1);
+  }
+
+  /** Records a successful load of {@code uri}. */
+  synchronized void succeeded(Uri uri) {
+    hostFailures.remove(hostOf(uri));
+  }
+
+  private static String hostOf(Uri uri) {
+    String host = uri != null ? uri.getHost() : null;
+    return host != null ? host : "";
+  }
+}
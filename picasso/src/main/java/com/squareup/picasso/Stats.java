@@ -20,6 +20,10 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static android.os.Process.THREAD_PRIORITY_BACKGROUND;
 
@@ -29,11 +33,24 @@ class Stats {
   private static final int CACHE_MISS = 2;
   private static final int BITMAP_DECODE_FINISHED = 3;
   private static final int BITMAP_TRANSFORMED_FINISHED = 4;
+  private static final int HUNTER_DELIVERED = 5;
+  private static final int HUNTER_CANCELLED = 6;
+
+  private static final int STAGE_QUEUE = 0;
+  private static final int STAGE_FETCH = 1;
+  private static final int STAGE_DECODE = 2;
+  private static final int STAGE_TRANSFORM = 3;
+  private static final int STAGE_DELIVERY = 4;
+  private static final int STAGE_TOTAL = 5;
+  private static final int STAGE_COUNT = 6;
 
   private static final String STATS_THREAD_NAME = Utils.THREAD_PREFIX + "Stats";
 
   final HandlerThread statsThread;
   final Cache cache;
+  final BitmapPool bitmapPool;
+  final DecodeBudget decodeBudget;
+  final PicassoExecutorService networkService;
   final Handler handler;
 
   long cacheHits;
@@ -44,12 +61,24 @@ class Stats {
   long averageTransformedBitmapSize;
   int originalBitmapCount;
   int transformedBitmapCount;
+  long cancelledHunts;
+  final LatencyHistogram[][] loadedFromLatencies;
+  final Map<Class<?>, LatencyHistogram[]> hunterLatencies;
 
-  Stats(Cache cache) {
+  Stats(Cache cache, BitmapPool bitmapPool, DecodeBudget decodeBudget,
+      PicassoExecutorService networkService) {
     this.cache = cache;
+    this.bitmapPool = bitmapPool;
+    this.decodeBudget = decodeBudget;
+    this.networkService = networkService;
     this.statsThread = new HandlerThread(STATS_THREAD_NAME, THREAD_PRIORITY_BACKGROUND);
     this.statsThread.start();
     this.handler = new StatsHandler(statsThread.getLooper());
+    this.loadedFromLatencies = new LatencyHistogram[Picasso.LoadedFrom.values().length][];
+    for (int i = 0; i < loadedFromLatencies.length; i++) {
+      loadedFromLatencies[i] = newStageHistograms();
+    }
+    this.hunterLatencies = new LinkedHashMap<Class<?>, LatencyHistogram[]>();
   }
 
   void bitmapDecoded(Bitmap bitmap) {
@@ -68,15 +97,116 @@ class Stats {
     handler.sendEmptyMessage(CACHE_MISS);
   }
 
+  /** Records the stage latencies of a {@code hunter} whose result was just delivered. */
+  void hunterDelivered(BitmapHunter hunter) {
+    handler.sendMessage(handler.obtainMessage(HUNTER_DELIVERED, hunter));
+  }
+
+  /** Records a hunter which stopped its transfer or decode early because it was cancelled. */
+  void hunterCancelled() {
+    handler.sendEmptyMessage(HUNTER_CANCELLED);
+  }
+
   void shutdown() {
     statsThread.quit();
   }
 
   synchronized StatsSnapshot createSnapshot() {
+    long decodeWaits = decodeBudget != null ? decodeBudget.waitCount() : 0;
+    long totalDecodeWaitTime = decodeBudget != null ? decodeBudget.totalWaitTime() : 0;
+    long averageDecodeWaitTime =
+        decodeWaits > 0 ? getAverage(decodeWaits, totalDecodeWaitTime) : 0;
+    int networkThreadCount = networkService != null ? networkService.getMaximumPoolSize() : 0;
+    int threadCountIncreases = 0;
+    int threadCountDecreases = 0;
+    double networkBytesPerSecond = 0;
+    double networkHuntsPerSecond = 0;
+    AdaptiveThreadCount adaptive =
+        networkService != null ? networkService.getAdaptiveThreadCount() : null;
+    if (adaptive != null) {
+      synchronized (adaptive) {
+        threadCountIncreases = adaptive.increases;
+        threadCountDecreases = adaptive.decreases;
+        networkBytesPerSecond = adaptive.bytesPerSecond;
+        networkHuntsPerSecond = adaptive.huntsPerSecond;
+      }
+    }
     return new StatsSnapshot(cache.maxSize(), cache.size(), cacheHits, cacheMisses,
         totalOriginalBitmapSize, totalTransformedBitmapSize, averageOriginalBitmapSize,
         averageTransformedBitmapSize, originalBitmapCount, transformedBitmapCount,
-        System.currentTimeMillis());
+        bitmapPool != null ? bitmapPool.hitCount() : 0,
+        bitmapPool != null ? bitmapPool.missCount() : 0, decodeWaits, totalDecodeWaitTime,
+        averageDecodeWaitTime, snapshotLoadedFromLatencies(), snapshotHunterLatencies(),
+        networkThreadCount, threadCountIncreases, threadCountDecreases, networkBytesPerSecond,
+        networkHuntsPerSecond, cancelledHunts, System.currentTimeMillis());
+  }
+
+  private Map<Picasso.LoadedFrom, StatsSnapshot.StageLatencies> snapshotLoadedFromLatencies() {
+    Map<Picasso.LoadedFrom, StatsSnapshot.StageLatencies> latencies =
+        new EnumMap<Picasso.LoadedFrom, StatsSnapshot.StageLatencies>(Picasso.LoadedFrom.class);
+    for (Picasso.LoadedFrom from : Picasso.LoadedFrom.values()) {
+      LatencyHistogram[] histograms = loadedFromLatencies[from.ordinal()];
+      if (histograms[STAGE_TOTAL].count() > 0) {
+        latencies.put(from, snapshot(histograms));
+      }
+    }
+    return Collections.unmodifiableMap(latencies);
+  }
+
+  private Map<String, StatsSnapshot.StageLatencies> snapshotHunterLatencies() {
+    Map<String, StatsSnapshot.StageLatencies> latencies =
+        new LinkedHashMap<String, StatsSnapshot.StageLatencies>();
+    for (Map.Entry<Class<?>, LatencyHistogram[]> entry : hunterLatencies.entrySet()) {
+      latencies.put(entry.getKey().getSimpleName(), snapshot(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(latencies);
+  }
+
+  private void recordLatencies(BitmapHunter hunter) {
+    Picasso.LoadedFrom from = hunter.getLoadedFrom();
+    if (from == null) {
+      return;
+    }
+    LatencyHistogram[] byHunter = hunterLatencies.get(hunter.getClass());
+    if (byHunter == null) {
+      byHunter = newStageHistograms();
+      hunterLatencies.put(hunter.getClass(), byHunter);
+    }
+    recordLatencies(loadedFromLatencies[from.ordinal()], hunter);
+    recordLatencies(byHunter, hunter);
+  }
+
+  private static void recordLatencies(LatencyHistogram[] histograms, BitmapHunter hunter) {
+    histograms[STAGE_QUEUE].record(toMillis(hunter.startedAt - hunter.submittedAt));
+    histograms[STAGE_FETCH].record(toMillis(hunter.fetchedAt - hunter.startedAt));
+    histograms[STAGE_DECODE].record(toMillis(hunter.decodedAt - hunter.fetchedAt));
+    histograms[STAGE_TRANSFORM].record(toMillis(hunter.transformedAt - hunter.decodedAt));
+    histograms[STAGE_DELIVERY].record(toMillis(hunter.deliveredAt - hunter.transformedAt));
+    histograms[STAGE_TOTAL].record(toMillis(hunter.deliveredAt - hunter.submittedAt));
+  }
+
+  private static LatencyHistogram[] newStageHistograms() {
+    LatencyHistogram[] histograms = new LatencyHistogram[STAGE_COUNT];
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+    return histograms;
+  }
+
+  private static StatsSnapshot.StageLatencies snapshot(LatencyHistogram[] histograms) {
+    return new StatsSnapshot.StageLatencies(snapshot(histograms[STAGE_QUEUE]),
+        snapshot(histograms[STAGE_FETCH]), snapshot(histograms[STAGE_DECODE]),
+        snapshot(histograms[STAGE_TRANSFORM]), snapshot(histograms[STAGE_DELIVERY]),
+        snapshot(histograms[STAGE_TOTAL]));
+  }
+
+  private static StatsSnapshot.Percentiles snapshot(LatencyHistogram histogram) {
+    return new StatsSnapshot.Percentiles(histogram.count(), histogram.percentile(50),
+        histogram.percentile(90), histogram.percentile(99));
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos / 1000000;
   }
 
   private void processBitmap(Bitmap bitmap, int what) {
@@ -85,7 +215,7 @@ class Stats {
     handler.sendMessage(handler.obtainMessage(what, bitmapSize, 0));
   }
 
-  private static long getAverage(int count, long totalSize) {
+  private static long getAverage(long count, long totalSize) {
     return totalSize / count;
   }
 
@@ -115,6 +245,12 @@ class Stats {
             averageTransformedBitmapSize =
                 getAverage(originalBitmapCount, totalTransformedBitmapSize);
             break;
+          case HUNTER_DELIVERED:
+            recordLatencies((BitmapHunter) msg.obj);
+            break;
+          case HUNTER_CANCELLED:
+            cancelledHunts++;
+            break;
           case REQUESTED_COMPLETED:
             break;
           default:
@@ -18,6 +18,7 @@ package com.squareup.picasso;
 import android.util.Log;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Map;
 
 /** Represents all stats for a {@link Picasso} instance at a single point in time. */
 public class StatsSnapshot {
@@ -33,13 +34,36 @@ public class StatsSnapshot {
   public final long averageTransformedBitmapSize;
   public final int originalBitmapCount;
   public final int transformedBitmapCount;
+  public final int bitmapPoolHits;
+  public final int bitmapPoolMisses;
+  public final long decodeWaits;
+  public final long totalDecodeWaitTime;
+  public final long averageDecodeWaitTime;
+  /** Latencies of delivered images, by where they were loaded from. */
+  public final Map<Picasso.LoadedFrom, StageLatencies> latencyByLoadedFrom;
+  /** Latencies of delivered images, by the simple class name of the hunter which loaded them. */
+  public final Map<String, StageLatencies> latencyByHunter;
+  /** Threads of the default network executor, or 0 if the executor was supplied. */
+  public final int networkThreadCount;
+  /** How often the adaptive network executor added and removed threads. */
+  public final int threadCountIncreases;
+  public final int threadCountDecreases;
+  /** Throughput the adaptive network executor measured in its last complete window. */
+  public final double networkBytesPerSecond;
+  public final double networkHuntsPerSecond;
+  /** Hunters which stopped their transfer or decode early because they were cancelled. */
+  public final long cancelledHunts;
 
   public final long timeStamp;
 
   public StatsSnapshot(int maxSize, int size, long cacheHits, long cacheMisses,
       long totalOriginalBitmapSize, long totalTransformedBitmapSize, long averageOriginalBitmapSize,
       long averageTransformedBitmapSize, int originalBitmapCount, int transformedBitmapCount,
-      long timeStamp) {
+      int bitmapPoolHits, int bitmapPoolMisses, long decodeWaits, long totalDecodeWaitTime,
+      long averageDecodeWaitTime, Map<Picasso.LoadedFrom, StageLatencies> latencyByLoadedFrom,
+      Map<String, StageLatencies> latencyByHunter, int networkThreadCount,
+      int threadCountIncreases, int threadCountDecreases, double networkBytesPerSecond,
+      double networkHuntsPerSecond, long cancelledHunts, long timeStamp) {
     this.maxSize = maxSize;
     this.size = size;
     this.cacheHits = cacheHits;
@@ -50,6 +74,19 @@ public class StatsSnapshot {
     this.averageTransformedBitmapSize = averageTransformedBitmapSize;
     this.originalBitmapCount = originalBitmapCount;
     this.transformedBitmapCount = transformedBitmapCount;
+    this.bitmapPoolHits = bitmapPoolHits;
+    this.bitmapPoolMisses = bitmapPoolMisses;
+    this.decodeWaits = decodeWaits;
+    this.totalDecodeWaitTime = totalDecodeWaitTime;
+    this.averageDecodeWaitTime = averageDecodeWaitTime;
+    this.latencyByLoadedFrom = latencyByLoadedFrom;
+    this.latencyByHunter = latencyByHunter;
+    this.networkThreadCount = networkThreadCount;
+    this.threadCountIncreases = threadCountIncreases;
+    this.threadCountDecreases = threadCountDecreases;
+    this.networkBytesPerSecond = networkBytesPerSecond;
+    this.networkHuntsPerSecond = networkHuntsPerSecond;
+    this.cancelledHunts = cancelledHunts;
     this.timeStamp = timeStamp;
   }
 
@@ -85,6 +122,38 @@ public class StatsSnapshot {
     writer.println(averageOriginalBitmapSize);
     writer.print("  Average Transformed Bitmap Size: ");
     writer.println(averageTransformedBitmapSize);
+    writer.println("Bitmap Pool Stats");
+    writer.print("  Pool Hits: ");
+    writer.println(bitmapPoolHits);
+    writer.print("  Pool Misses: ");
+    writer.println(bitmapPoolMisses);
+    writer.println("Decode Budget Stats");
+    writer.print("  Waits: ");
+    writer.println(decodeWaits);
+    writer.print("  Total Wait Time (ms): ");
+    writer.println(totalDecodeWaitTime);
+    writer.print("  Average Wait Time (ms): ");
+    writer.println(averageDecodeWaitTime);
+    writer.println("Network Executor Stats");
+    writer.print("  Threads: ");
+    writer.println(networkThreadCount);
+    writer.print("  Thread Count Increases: ");
+    writer.println(threadCountIncreases);
+    writer.print("  Thread Count Decreases: ");
+    writer.println(threadCountDecreases);
+    writer.print("  Bytes/s: ");
+    writer.println(networkBytesPerSecond);
+    writer.print("  Hunts/s: ");
+    writer.println(networkHuntsPerSecond);
+    writer.print("  Cancelled In Flight: ");
+    writer.println(cancelledHunts);
+    writer.println("Latency Stats (ms, p50/p90/p99)");
+    for (Map.Entry<Picasso.LoadedFrom, StageLatencies> entry : latencyByLoadedFrom.entrySet()) {
+      entry.getValue().dump(writer, entry.getKey().toString());
+    }
+    for (Map.Entry<String, StageLatencies> entry : latencyByHunter.entrySet()) {
+      entry.getValue().dump(writer, entry.getKey());
+    }
     writer.println("===============END PICASSO STATS ===============");
     writer.flush();
   }
@@ -111,8 +180,138 @@ public class StatsSnapshot {
         + originalBitmapCount
         + ", transformedBitmapCount="
         + transformedBitmapCount
+        + ", bitmapPoolHits="
+        + bitmapPoolHits
+        + ", bitmapPoolMisses="
+        + bitmapPoolMisses
+        + ", decodeWaits="
+        + decodeWaits
+        + ", totalDecodeWaitTime="
+        + totalDecodeWaitTime
+        + ", averageDecodeWaitTime="
+        + averageDecodeWaitTime
+        + ", latencyByLoadedFrom="
+        + latencyByLoadedFrom
+        + ", latencyByHunter="
+        + latencyByHunter
+        + ", networkThreadCount="
+        + networkThreadCount
+        + ", threadCountIncreases="
+        + threadCountIncreases
+        + ", threadCountDecreases="
+        + threadCountDecreases
+        + ", networkBytesPerSecond="
+        + networkBytesPerSecond
+        + ", networkHuntsPerSecond="
+        + networkHuntsPerSecond
+        + ", cancelledHunts="
+        + cancelledHunts
         + ", timeStamp="
         + timeStamp
         + '}';
   }
+
+  /**
+   * Latencies of each stage of loading an image, from the hunter being submitted until its result
+   * is delivered on the main thread. Retries count as queue time and images found in a cache have
+   * no fetch, decode or transform time.
+   */
+  public static final class StageLatencies {
+    /** From submitting the hunter until a thread starts running it. */
+    public final Percentiles queue;
+    /** Until the source was opened, such as the {@link Downloader} returning a response. */
+    public final Percentiles fetch;
+    /** Until the source was decoded. */
+    public final Percentiles decode;
+    /** Until the decoded image was transformed. */
+    public final Percentiles transform;
+    /** Until the result was delivered on the main thread. */
+    public final Percentiles delivery;
+    /** From submitting the hunter until its result was delivered. */
+    public final Percentiles total;
+
+    public StageLatencies(Percentiles queue, Percentiles fetch, Percentiles decode,
+        Percentiles transform, Percentiles delivery, Percentiles total) {
+      this.queue = queue;
+      this.fetch = fetch;
+      this.decode = decode;
+      this.transform = transform;
+      this.delivery = delivery;
+      this.total = total;
+    }
+
+    void dump(PrintWriter writer, String name) {
+      writer.print("  ");
+      writer.print(name);
+      writer.print(" (");
+      writer.print(total.count);
+      writer.println(" images)");
+      queue.dump(writer, "Queue");
+      fetch.dump(writer, "Fetch");
+      decode.dump(writer, "Decode");
+      transform.dump(writer, "Transform");
+      delivery.dump(writer, "Delivery");
+      total.dump(writer, "Total");
+    }
+
+    @Override public String toString() {
+      return "StageLatencies{"
+          + "queue="
+          + queue
+          + ", fetch="
+          + fetch
+          + ", decode="
+          + decode
+          + ", transform="
+          + transform
+          + ", delivery="
+          + delivery
+          + ", total="
+          + total
+          + '}';
+    }
+  }
+
+  /**
+   * Percentiles of a latency in ms. Latencies are counted in power of two buckets, so each
+   * percentile is the upper bound of its bucket: a {@code p90} of 64 means that 90% of the
+   * images took less than 64ms.
+   */
+  public static final class Percentiles {
+    public final long count;
+    public final long p50;
+    public final long p90;
+    public final long p99;
+
+    public Percentiles(long count, long p50, long p90, long p99) {
+      this.count = count;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+    }
+
+    void dump(PrintWriter writer, String name) {
+      writer.print("    ");
+      writer.print(name);
+      writer.print(": ");
+      writer.print(p50);
+      writer.print('/');
+      writer.print(p90);
+      writer.print('/');
+      writer.println(p99);
+    }
+
+    @Override public String toString() {
+      return "Percentiles{"
+          + "count="
+          + count
+          + ", p50="
+          + p50
+          + ", p90="
+          + p90
+          + ", p99="
+          + p99
+          + '}';
+    }
+  }
 }
@@ -26,7 +26,7 @@ final class TargetRequest extends Request<Target> {
 
   TargetRequest(Picasso picasso, Uri uri, int resourceId, Target target,
       PicassoBitmapOptions bitmapOptions, List<Transformation> transformations, boolean skipCache,
-      String key) {
+      RequestKey key) {
     super(picasso, uri, resourceId, null, bitmapOptions, transformations, skipCache, false, 0, null,
         key);
     this.weakTarget = new RequestWeakReference<Target>(this, target, picasso.referenceQueue);
@@ -0,0 +1,33 @@
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.widget.ImageView;
+import java.util.List;
+
+/**
+ * Shows a cheap version of an image until the {@link ImageViewRequest} which owns it completes.
+ * It is never tracked as the request for its target, so it does not replace the full request, and
+ * the full request cancels it once the full image is delivered.
+ */
+class ThumbnailRequest extends Request<ImageView> {
+
+  ThumbnailRequest(Picasso picasso, Uri uri, int resourceId, ImageView imageView,
+      PicassoBitmapOptions options, List<Transformation> transformations, boolean skipCache,
+      boolean noFade, RequestKey key) {
+    super(picasso, uri, resourceId, imageView, options, transformations, skipCache, noFade, 0,
+        null, key);
+  }
+
+  @Override void complete(Bitmap result, Picasso.LoadedFrom from) {
+    ImageView target = this.target.get();
+    if (target == null) {
+      return;
+    }
+    PicassoDrawable.setBitmap(target, picasso.context, result, from, noFade, picasso.debugging);
+  }
+
+  @Override void error() {
+    // Keep the placeholder until the full image arrives.
+  }
+}
@@ -54,7 +54,7 @@ public class UrlConnectionDownloader implements Downloader {
       installCacheIfNeeded(context);
     }
 
-    HttpURLConnection connection = openConnection(uri);
+    final HttpURLConnection connection = openConnection(uri);
     connection.setUseCaches(true);
     if (localCacheOnly) {
       connection.setRequestProperty("Cache-Control", "only-if-cached");
@@ -62,7 +62,13 @@ public class UrlConnectionDownloader implements Downloader {
 
     boolean fromCache = parseResponseSourceHeader(connection.getHeaderField(RESPONSE_SOURCE));
 
-    return new Response(connection.getInputStream(), fromCache);
+    return new Response(connection.getInputStream(), fromCache,
+        connection.getHeaderFieldInt("Content-Length", -1)) {
+      @Override public void abort() {
+        // Closes the socket, which also fails a read blocked on it.
+        connection.disconnect();
+      }
+    };
   }
 
   private static void installCacheIfNeeded(Context context) {
@@ -30,9 +30,16 @@ import android.provider.Settings;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.ThreadFactory;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
 import static android.content.Context.ACTIVITY_SERVICE;
 import static android.content.pm.ApplicationInfo.FLAG_LARGE_HEAP;
 import static android.os.Build.VERSION.SDK_INT;
@@ -46,7 +53,6 @@ final class Utils {
   static final int DEFAULT_READ_TIMEOUT = 20 * 1000; // 20s
   static final int DEFAULT_CONNECT_TIMEOUT = 15 * 1000; // 15s
   private static final String PICASSO_CACHE = "picasso-cache";
-  private static final int KEY_PADDING = 50; // Determined by exact science.
   private static final int MIN_DISK_CACHE_SIZE = 5 * 1024 * 1024; // 5MB
   private static final int MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
   private static final int MAX_MEM_CACHE_SIZE = 20 * 1024 * 1024; // 20MB
@@ -74,58 +80,9 @@ final class Utils {
     }
   }
 
-  static String createKey(Uri uri, int resourceId, PicassoBitmapOptions options,
+  static RequestKey createKey(Uri uri, int resourceId, PicassoBitmapOptions options,
       List<Transformation> transformations) {
-    StringBuilder builder;
-
-    if (uri != null) {
-      String path = uri.toString();
-      builder = new StringBuilder(path.length() + KEY_PADDING);
-      builder.append(path);
-    } else {
-      builder = new StringBuilder(KEY_PADDING);
-      builder.append(resourceId);
-    }
-    builder.append('\n');
-
-    if (options != null) {
-      float targetRotation = options.targetRotation;
-      if (targetRotation != 0) {
-        builder.append("rotation:").append(targetRotation);
-        if (options.hasRotationPivot) {
-          builder.append('@').append(options.targetPivotX).append('x').append(options.targetPivotY);
-        }
-        builder.append('\n');
-      }
-      int targetWidth = options.targetWidth;
-      int targetHeight = options.targetHeight;
-      if (targetWidth != 0) {
-        builder.append("resize:").append(targetWidth).append('x').append(targetHeight);
-        builder.append('\n');
-      }
-      if (options.centerCrop) {
-        builder.append("centerCrop\n");
-      }
-      if (options.centerInside) {
-        builder.append("centerInside\n");
-      }
-      float targetScaleX = options.targetScaleX;
-      float targetScaleY = options.targetScaleY;
-      if (targetScaleX != 0) {
-        builder.append("scale:").append(targetScaleX).append('x').append(targetScaleY);
-        builder.append('\n');
-      }
-    }
-
-    if (transformations != null) {
-      //noinspection ForLoopReplaceableByForEach
-      for (int i = 0, count = transformations.size(); i < count; i++) {
-        builder.append(transformations.get(i).key());
-        builder.append('\n');
-      }
-    }
-
-    return builder.toString();
+    return new RequestKey(uri, resourceId, options, transformations);
   }
 
   static void closeQuietly(InputStream is) {
@@ -136,6 +93,14 @@ final class Utils {
     }
   }
 
+  static void closeQuietly(OutputStream os) {
+    if (os == null) return;
+    try {
+      os.close();
+    } catch (IOException ignored) {
+    }
+  }
+
   /** Returns {@code true} if header indicates the response body was loaded from the disk cache. */
   static boolean parseResponseSourceHeader(String header) {
     if (header == null) {
@@ -200,6 +165,31 @@ final class Utils {
     return Math.min(size, MAX_MEM_CACHE_SIZE);
   }
 
+  /** Returns how much of a {@code maxSize} memory cache to keep at a memory trim {@code level}. */
+  static int calculateTrimmedCacheSize(int maxSize, int level) {
+    if (level >= TRIM_MEMORY_COMPLETE) {
+      // The process is next to be killed. Every byte freed makes that less likely.
+      return 0;
+    }
+    if (level >= TRIM_MEMORY_MODERATE) {
+      return maxSize / 4;
+    }
+    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      // Nothing is on screen, so only images the user returns to are worth keeping.
+      return maxSize / 2;
+    }
+    if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+      return maxSize / 4;
+    }
+    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      return maxSize / 2;
+    }
+    if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+      return maxSize / 4 * 3;
+    }
+    return maxSize;
+  }
+
   static boolean isAirplaneModeOn(Context context) {
     ContentResolver contentResolver = context.getContentResolver();
     return Settings.System.getInt(contentResolver, AIRPLANE_MODE_ON, 0) != 0;
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import org.junit.Test;
+
+import static com.squareup.picasso.AdaptiveThreadCount.WINDOW_MILLIS;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AdaptiveThreadCountTest {
+
+  @Test public void constructorDoesNotAllowInvalidBounds() {
+    try {
+      new AdaptiveThreadCount(0, 4);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new AdaptiveThreadCount(4, 3);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void restartClampsIntoBounds() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(2, 6);
+    assertThat(adaptive.restart(1, 0)).isEqualTo(2);
+    assertThat(adaptive.restart(4, 0)).isEqualTo(4);
+    assertThat(adaptive.restart(10, 0)).isEqualTo(6);
+  }
+
+  @Test public void noDecisionBeforeWindowEnds() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(1, 6);
+    adaptive.restart(3, 0);
+    assertThat(adaptive.record(1000, 3, 5, WINDOW_MILLIS - 1)).isEqualTo(-1);
+    assertThat(adaptive.increases).isZero();
+  }
+
+  @Test public void growsWhileHuntersAreQueued() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(1, 6);
+    adaptive.restart(3, 0);
+    assertThat(adaptive.record(1000, 3, 5, WINDOW_MILLIS)).isEqualTo(4);
+    // Throughput kept up, so another thread is added.
+    assertThat(adaptive.record(2000, 4, 5, 2 * WINDOW_MILLIS)).isEqualTo(5);
+    assertThat(adaptive.increases).isEqualTo(2);
+    assertThat(adaptive.bytesPerSecond).isEqualTo(1000.0);
+  }
+
+  @Test public void holdsWithoutBacklog() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(1, 6);
+    adaptive.restart(3, 0);
+    assertThat(adaptive.record(1000, 3, 0, WINDOW_MILLIS)).isEqualTo(3);
+    assertThat(adaptive.increases).isZero();
+    assertThat(adaptive.decreases).isZero();
+  }
+
+  @Test public void shrinksWhenThroughputDropsAfterIncrease() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(1, 12);
+    adaptive.restart(7, 0);
+    assertThat(adaptive.record(10000, 7, 5, WINDOW_MILLIS)).isEqualTo(8);
+    assertThat(adaptive.record(5000, 8, 5, 2 * WINDOW_MILLIS)).isEqualTo(6);
+    assertThat(adaptive.decreases).isEqualTo(1);
+  }
+
+  @Test public void comparesHuntsWhenLengthIsUnknown() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(1, 12);
+    adaptive.restart(4, 0);
+    for (int i = 0; i < 9; i++) {
+      adaptive.record(-1, 4, 5, 1);
+    }
+    assertThat(adaptive.record(-1, 4, 5, WINDOW_MILLIS)).isEqualTo(5);
+    assertThat(adaptive.record(-1, 5, 5, 2 * WINDOW_MILLIS)).isEqualTo(4);
+    assertThat(adaptive.bytesPerSecond).isZero();
+  }
+
+  @Test public void staysWithinBounds() {
+    AdaptiveThreadCount adaptive = new AdaptiveThreadCount(2, 3);
+    adaptive.restart(3, 0);
+    assertThat(adaptive.record(1000, 3, 5, WINDOW_MILLIS)).isEqualTo(3);
+    adaptive.restart(2, 0);
+    assertThat(adaptive.record(1000, 2, 5, WINDOW_MILLIS)).isEqualTo(3);
+    assertThat(adaptive.record(10, 3, 5, 2 * WINDOW_MILLIS)).isEqualTo(2);
+    assertThat(adaptive.record(1, 2, 0, 3 * WINDOW_MILLIS)).isEqualTo(2);
+  }
+}
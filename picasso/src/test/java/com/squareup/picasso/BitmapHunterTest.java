@@ -17,9 +17,17 @@ package com.squareup.picasso;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.net.Uri;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.FutureTask;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,7 +38,15 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowBitmap;
 import org.robolectric.shadows.ShadowMatrix;
 
+import static android.graphics.Bitmap.Config.ALPHA_8;
 import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.graphics.Bitmap.Config.RGB_565;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static com.squareup.picasso.BitmapHunter.applyCustomTransformations;
+import static com.squareup.picasso.BitmapHunter.calculateInSampleSize;
+import static com.squareup.picasso.BitmapHunter.calculateRegionSampleSize;
+import static com.squareup.picasso.BitmapHunter.cropRegion;
+import static com.squareup.picasso.BitmapHunter.decodeConfig;
 import static com.squareup.picasso.BitmapHunter.forRequest;
 import static com.squareup.picasso.BitmapHunter.transformResult;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
@@ -47,6 +63,7 @@ import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
 import static com.squareup.picasso.TestUtils.mockRequest;
+import static junit.framework.Assert.fail;
 import static org.fest.assertions.api.ANDROID.assertThat;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.entry;
@@ -93,6 +110,28 @@ public class BitmapHunterTest {
     verify(dispatcher).dispatchRetry(hunter);
   }
 
+  @Test public void runCancelledWithIoExceptionDoesNotRetry() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, request, null, true);
+    hunter.cancelled = true;
+    hunter.run();
+    verify(dispatcher, never()).dispatchRetry(hunter);
+    verify(dispatcher, never()).dispatchFailed(hunter);
+  }
+
+  @Test public void runInTransformStageDoesNotDecodeAgain() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    BitmapHunter hunter =
+        spy(new TestableBitmapHunter(picasso, dispatcher, cache, request, BITMAP_1));
+    hunter.decoded = BITMAP_1;
+    hunter.transforming = true;
+    hunter.run();
+    verify(hunter, never()).decode(URI_1, request.options, hunter.retryCount);
+    verify(dispatcher).dispatchComplete(hunter);
+    assertThat(hunter.getResult()).isEqualTo(BITMAP_1);
+    assertThat(hunter.decoded).isNull();
+  }
+
   @Test public void huntDecodesWhenNotInCache() throws Exception {
     Request request = mockRequest(URI_KEY_1, URI_1, mockImageViewTarget());
     BitmapHunter hunter =
@@ -142,6 +181,19 @@ public class BitmapHunterTest {
     assertThat(hunter.cancel()).isTrue();
   }
 
+  @Test public void cancellableStreamFailsReadsOnceCancelled() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, request);
+    InputStream stream = hunter.cancellable(new ByteArrayInputStream(new byte[10]));
+    assertThat(stream.read()).isEqualTo(0);
+    hunter.cancelled = true;
+    try {
+      stream.read(new byte[5], 0, 5);
+      fail();
+    } catch (InterruptedIOException expected) {
+    }
+  }
+
   // ---------------------------------------
 
   @Test public void forContentProviderRequest() throws Exception {
@@ -181,6 +233,112 @@ public class BitmapHunterTest {
 
   // TODO more static forTests
 
+  @Test public void boundsPassWithoutTargetSizeDoesNotSample() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.inJustDecodeBounds = true;
+    options.outWidth = 4000;
+    options.outHeight = 3000;
+    calculateInSampleSize(options);
+    assertThat(options.inSampleSize).isEqualTo(1);
+    assertThat(options.inJustDecodeBounds).isFalse();
+  }
+
+  @Test public void sampleIsPowerOfTwoAndDensityScalesTheRest() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.outWidth = 4000;
+    options.outHeight = 3000;
+    options.targetWidth = 320;
+    options.targetHeight = 240;
+    calculateInSampleSize(options);
+    assertThat(options.inSampleSize).isEqualTo(8);
+    assertThat(options.densityScaled).isTrue();
+    assertThat(options.inDensity).isEqualTo(4000);
+    assertThat(options.inTargetDensity).isEqualTo(2560);
+  }
+
+  @Test public void exactPowerOfTwoNeedsNoDensityScaling() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.outWidth = 1280;
+    options.outHeight = 960;
+    options.targetWidth = 320;
+    options.targetHeight = 240;
+    calculateInSampleSize(options);
+    assertThat(options.inSampleSize).isEqualTo(4);
+    assertThat(options.densityScaled).isFalse();
+    assertThat(options.inDensity).isZero();
+  }
+
+  @Test public void centerInsideScalesAlongTheSideWhichNeedsMostReduction() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.outWidth = 4000;
+    options.outHeight = 1000;
+    options.targetWidth = 400;
+    options.targetHeight = 400;
+    calculateInSampleSize(options);
+    assertThat(options.inSampleSize).isEqualTo(2);
+    assertThat(options.inTargetDensity).isEqualTo(800);
+    assertThat(options.inDensity).isEqualTo(1000);
+
+    options.centerInside = true;
+    calculateInSampleSize(options);
+    assertThat(options.inSampleSize).isEqualTo(8);
+    assertThat(options.inTargetDensity).isEqualTo(3200);
+    assertThat(options.inDensity).isEqualTo(4000);
+  }
+
+  @Test public void regionSampleSizeDoesNotDensityScale() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 320;
+    options.targetHeight = 240;
+    calculateRegionSampleSize(options, new Rect(0, 0, 4000, 3000));
+    assertThat(options.inSampleSize).isEqualTo(8);
+    assertThat(options.densityScaled).isFalse();
+    assertThat(options.inDensity).isZero();
+  }
+
+  @Test public void transformResultSkipsImageAlreadyAtTargetSize() throws Exception {
+    Bitmap source = Bitmap.createBitmap(50, 50, ARGB_8888);
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 50;
+    options.targetHeight = 50;
+    options.centerCrop = true;
+    assertThat(transformResult(options, source, 0)).isSameAs(source);
+  }
+
+  @Test public void decodeConfigPrefersLowMemoryConfigForJpegs() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.outMimeType = "image/jpeg";
+    assertThat(decodeConfig(options)).isEqualTo(ARGB_8888);
+    options.preferLowMemoryConfig = true;
+    assertThat(decodeConfig(options)).isEqualTo(RGB_565);
+    options.outMimeType = "image/png";
+    assertThat(decodeConfig(options)).isEqualTo(ARGB_8888);
+  }
+
+  @Test public void decodeConfigUsesRequestedConfig() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.config = ALPHA_8;
+    options.preferLowMemoryConfig = true;
+    options.outMimeType = "image/jpeg";
+    assertThat(decodeConfig(options)).isEqualTo(ALPHA_8);
+  }
+
+  @Test public void cropRegionScalesRegionBySampleSize() throws Exception {
+    Bitmap source = Bitmap.createBitmap(100, 100, ARGB_8888);
+    Bitmap result = cropRegion(source, new Rect(40, 60, 120, 100), 2);
+    ShadowBitmap shadowBitmap = shadowOf(result);
+    assertThat(shadowBitmap.getCreatedFromBitmap()).isSameAs(source);
+    assertThat(shadowBitmap.getCreatedFromX()).isEqualTo(20);
+    assertThat(shadowBitmap.getCreatedFromY()).isEqualTo(30);
+    assertThat(shadowBitmap.getCreatedFromWidth()).isEqualTo(40);
+    assertThat(shadowBitmap.getCreatedFromHeight()).isEqualTo(20);
+  }
+
+  @Test public void cropRegionOutsideOfImageReturnsNull() throws Exception {
+    Bitmap source = Bitmap.createBitmap(100, 100, ARGB_8888);
+    assertThat(cropRegion(source, new Rect(200, 200, 300, 300), 1)).isNull();
+  }
+
   @Test public void exifRotation() throws Exception {
     Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
     Bitmap result = transformResult(null, source, 90);
@@ -432,6 +590,152 @@ public class BitmapHunterTest {
     assertThat(result).isSameAs(source).isNotRecycled();
   }
 
+  @Test public void huntResumesFromLongestCachedPrefix() throws Exception {
+    Bitmap cached = Bitmap.createBitmap(10, 10, ARGB_8888);
+    Bitmap transformed = Bitmap.createBitmap(10, 10, ARGB_8888);
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new TestTransformation("first"));
+    transformations.add(new TestTransformation("second", transformed));
+    RequestKey key = Utils.createKey(URI_1, 0, null, transformations);
+    when(cache.get(key.prefix(1))).thenReturn(cached);
+    Request request = new TestRequest(picasso, key, transformations);
+    BitmapHunter hunter =
+        spy(new TestableBitmapHunter(picasso, dispatcher, cache, request, BITMAP_1));
+
+    assertThat(hunter.hunt()).isSameAs(transformed);
+    assertThat(cached).isNotRecycled();
+    verify(hunter, never()).decode(URI_1, null, hunter.retryCount);
+  }
+
+  @Test public void hunterDecodesWithItsOwnCopyOfTheOptions() throws Exception {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 20;
+    options.targetHeight = 10;
+    options.centerCrop = true;
+    options.inJustDecodeBounds = true;
+    Request request = new TestRequest(picasso, URI_KEY_1, options, null);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, cache, request);
+    BitmapHunter other = new TestableBitmapHunter(picasso, dispatcher, cache, request);
+
+    assertThat(hunter.options).isNotSameAs(options).isNotSameAs(other.options);
+    assertThat(hunter.options.targetWidth).isEqualTo(20);
+    assertThat(hunter.options.targetHeight).isEqualTo(10);
+    assertThat(hunter.options.centerCrop).isTrue();
+    assertThat(hunter.options.inJustDecodeBounds).isTrue();
+    hunter.options.inSampleSize = 4;
+    hunter.options.inPreferredConfig = RGB_565;
+    assertThat(options.inSampleSize).isNotEqualTo(4);
+    assertThat(other.options.inPreferredConfig).isNotEqualTo(RGB_565);
+  }
+
+  @Test public void huntCountsOneCacheMissForAllPrefixes() throws Exception {
+    LruCache lruCache = new LruCache(10000);
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new TestTransformation("first"));
+    transformations.add(new TestTransformation("second"));
+    RequestKey key = Utils.createKey(URI_1, 0, null, transformations);
+    Request request = new TestRequest(picasso, key, transformations);
+    BitmapHunter hunter = new TestableBitmapHunter(picasso, dispatcher, lruCache, request,
+        Bitmap.createBitmap(10, 10, ARGB_8888));
+
+    assertThat(hunter.hunt()).isNotNull();
+    assertThat(lruCache.missCount()).isEqualTo(1);
+    assertThat(lruCache.hitCount()).isZero();
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void canvasTransformationsAlternateBetweenPooledBitmaps() throws Exception {
+    BitmapPool pool = new BitmapPool(10000);
+    Bitmap first = mutableBitmap(10, 10);
+    Bitmap second = mutableBitmap(10, 10);
+    pool.put(first);
+    pool.put(second);
+    Bitmap source = mutableBitmap(10, 10);
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    RecordingCanvasTransformation recording = new RecordingCanvasTransformation();
+    for (int i = 0; i < 3; i++) {
+      transformations.add(recording);
+    }
+
+    Bitmap result = applyCustomTransformations(transformations, 0, source, pool);
+
+    assertThat(recording.sources).containsExactly(source, first, second);
+    assertThat(result).isSameAs(source).isNotRecycled();
+    assertThat(pool.hitCount()).isEqualTo(3);
+    assertThat(pool.missCount()).isZero();
+  }
+
+  @Test public void canvasTransformationsAfterOtherTransformationsAreDrawn() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, ARGB_8888);
+    Bitmap transformed = Bitmap.createBitmap(10, 10, ARGB_8888);
+    RecordingCanvasTransformation recording = new RecordingCanvasTransformation();
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new TestTransformation("test", transformed));
+    transformations.add(recording);
+
+    Bitmap result = applyCustomTransformations(transformations, source);
+
+    assertThat(recording.sources).containsExactly(transformed);
+    assertThat(transformed).isRecycled();
+    assertThat(result).isNotSameAs(transformed).isNotRecycled();
+  }
+
+  @Test public void canvasTransformationsDrawOpaqueImagesWithAlpha() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 10, RGB_565);
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new RecordingCanvasTransformation());
+
+    Bitmap result = applyCustomTransformations(transformations, source);
+
+    assertThat(result.getConfig()).isEqualTo(ARGB_8888);
+    assertThat(source).isRecycled();
+  }
+
+  @Test public void canvasTransformationAsTransformationRecyclesSource() throws Exception {
+    Bitmap source = Bitmap.createBitmap(10, 20, ARGB_8888);
+    RecordingCanvasTransformation recording = new RecordingCanvasTransformation();
+    Bitmap result = recording.transform(source);
+    assertThat(recording.sources).containsExactly(source);
+    assertThat(source).isRecycled();
+    assertThat(result).hasWidth(10).hasHeight(20);
+  }
+
+  private static Bitmap mutableBitmap(int width, int height) {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, ARGB_8888);
+    shadowOf(bitmap).setMutable(true);
+    return bitmap;
+  }
+
+  private static class RecordingCanvasTransformation extends CanvasTransformation {
+    final List<Bitmap> sources = new ArrayList<Bitmap>();
+
+    @Override public void draw(Canvas canvas, Bitmap source, Matrix matrix, Paint paint) {
+      sources.add(source);
+      canvas.drawBitmap(source, matrix, paint);
+    }
+
+    @Override public String key() {
+      return "recording";
+    }
+  }
+
+  private static class TestRequest extends Request<Object> {
+    TestRequest(Picasso picasso, RequestKey key, List<Transformation> transformations) {
+      this(picasso, key, null, transformations);
+    }
+
+    TestRequest(Picasso picasso, RequestKey key, PicassoBitmapOptions options,
+        List<Transformation> transformations) {
+      super(picasso, URI_1, 0, null, options, transformations, false, false, 0, null, key);
+    }
+
+    @Override void complete(Bitmap result, Picasso.LoadedFrom from) {
+    }
+
+    @Override void error() {
+    }
+  }
+
   private static class TestableBitmapHunter extends BitmapHunter {
     private final Bitmap result;
     private final boolean throwException;
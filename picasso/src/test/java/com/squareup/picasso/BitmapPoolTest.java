@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ALPHA_8;
+import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.os.Build.VERSION_CODES.GINGERBREAD;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.Robolectric.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class BitmapPoolTest {
+
+  @Test public void constructorDoesNotAllowZeroSize() {
+    try {
+      new BitmapPool(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test @Config(reportSdk = GINGERBREAD)
+  public void rejectsBitmapsBeforeHoneycomb() {
+    BitmapPool pool = new BitmapPool(100);
+    assertThat(pool.put(mutableBitmap(2, 2, ALPHA_8))).isFalse();
+    assertThat(pool.size()).isZero();
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void rejectsImmutableBitmaps() {
+    BitmapPool pool = new BitmapPool(100);
+    Bitmap bitmap = Bitmap.createBitmap(2, 2, ALPHA_8);
+    shadowOf(bitmap).setMutable(false);
+    assertThat(pool.put(bitmap)).isFalse();
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void rejectsBitmapsLargerThanThePool() {
+    BitmapPool pool = new BitmapPool(3);
+    assertThat(pool.put(mutableBitmap(2, 2, ALPHA_8))).isFalse();
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void requiresExactDimensionsBeforeKitKat() {
+    BitmapPool pool = new BitmapPool(100);
+    Bitmap bitmap = mutableBitmap(4, 4, ALPHA_8);
+    pool.put(bitmap);
+    assertThat(pool.get(2, 2, ALPHA_8)).isNull();
+    assertThat(pool.get(4, 4, ARGB_8888)).isNull();
+    assertThat(pool.get(4, 4, ALPHA_8)).isSameAs(bitmap);
+    assertThat(pool.size()).isZero();
+    assertThat(pool.hitCount()).isEqualTo(1);
+    assertThat(pool.missCount()).isEqualTo(2);
+  }
+
+  @Test @Config(reportSdk = BitmapPool.KITKAT)
+  public void reusesLargeEnoughAllocationsOnKitKat() {
+    BitmapPool pool = new BitmapPool(100);
+    Bitmap bitmap = mutableBitmap(4, 4, ALPHA_8);
+    pool.put(bitmap);
+    assertThat(pool.get(5, 5, ALPHA_8)).isNull();
+    assertThat(pool.get(2, 2, ALPHA_8)).isNull(); // Would waste more than half the allocation.
+    assertThat(pool.get(3, 4, ALPHA_8)).isSameAs(bitmap);
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void dropsOldestBitmapsWhenFull() {
+    BitmapPool pool = new BitmapPool(8);
+    Bitmap first = mutableBitmap(2, 2, ALPHA_8);
+    Bitmap second = mutableBitmap(2, 2, ALPHA_8);
+    Bitmap third = mutableBitmap(2, 2, ALPHA_8);
+    pool.put(first);
+    pool.put(second);
+    pool.put(third);
+    assertThat(pool.bitmaps).containsExactly(second, third);
+    assertThat(pool.size()).isEqualTo(8);
+    assertThat(first.isRecycled()).isFalse();
+  }
+
+  @Test @Config(reportSdk = JELLY_BEAN)
+  public void trimToSizeHoldsPoolUntilRestored() {
+    BitmapPool pool = new BitmapPool(8);
+    Bitmap first = mutableBitmap(2, 2, ALPHA_8);
+    Bitmap second = mutableBitmap(2, 2, ALPHA_8);
+    pool.put(first);
+    pool.put(second);
+    pool.trimToSize(4);
+    assertThat(pool.bitmaps).containsExactly(second);
+    pool.trimToSize(0);
+    assertThat(pool.bitmaps).isEmpty();
+    assertThat(pool.put(first)).isFalse();
+    pool.trimToSize(pool.maxSize());
+    assertThat(pool.put(first)).isTrue();
+    assertThat(pool.size()).isEqualTo(4);
+  }
+
+  private static Bitmap mutableBitmap(int width, int height, Bitmap.Config config) {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+    shadowOf(bitmap).setMutable(true);
+    return bitmap;
+  }
+}
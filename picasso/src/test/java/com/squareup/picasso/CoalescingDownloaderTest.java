@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.Downloader.Response;
+import static com.squareup.picasso.TestUtils.BITMAP_1;
+import static com.squareup.picasso.TestUtils.URI_1;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CoalescingDownloaderTest {
+  private final byte[] bytes = new byte[20000];
+  private Downloader delegate;
+  private CoalescingDownloader downloader;
+
+  @Before public void setUp() throws Exception {
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    delegate = mock(Downloader.class);
+    when(delegate.load(URI_1, false))
+        .thenReturn(new Response(new ByteArrayInputStream(bytes), true))
+        .thenReturn(new Response(new ByteArrayInputStream(bytes), true));
+    downloader = new CoalescingDownloader(delegate);
+  }
+
+  @Test public void concurrentLoadsShareOneDownload() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    Response follower = downloader.load(URI_1, false);
+    verify(delegate, times(1)).load(URI_1, false);
+    assertThat(follower.cached).isTrue();
+    assertThat(readFully(leader.getInputStream())).isEqualTo(bytes);
+    assertThat(readFully(follower.getInputStream())).isEqualTo(bytes);
+  }
+
+  @Test public void leaderClosingEarlyStillCompletesFollowers() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    Response follower = downloader.load(URI_1, false);
+    InputStream leaderStream = leader.getInputStream();
+    leaderStream.read(new byte[100]);
+    leaderStream.close();
+    assertThat(readFully(follower.getInputStream())).isEqualTo(bytes);
+  }
+
+  @Test public void loadAfterLeaderFinishedDownloadsAgain() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    readFully(leader.getInputStream());
+    downloader.load(URI_1, false);
+    verify(delegate, times(2)).load(URI_1, false);
+    assertThat(downloader.flights).hasSize(1);
+  }
+
+  @Test public void loadAfterLeaderReadAloneDownloadsAgain() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    leader.getInputStream().read(new byte[100]);
+    Response late = downloader.load(URI_1, false);
+    verify(delegate, times(2)).load(URI_1, false);
+    assertThat(readFully(late.getInputStream())).isEqualTo(bytes);
+  }
+
+  @Test public void leaderFailureIsReportedToFollowers() throws Exception {
+    InputStream failing = new InputStream() {
+      @Override public int read() throws IOException {
+        throw new IOException("Connection reset.");
+      }
+    };
+    when(delegate.load(URI_1, true)).thenReturn(new Response(failing, false));
+    Response leader = downloader.load(URI_1, true);
+    Response follower = downloader.load(URI_1, true);
+    try {
+      leader.getInputStream().read(new byte[10]);
+      fail();
+    } catch (IOException expected) {
+    }
+    try {
+      follower.getInputStream().read(new byte[10]);
+      fail();
+    } catch (IOException expected) {
+    }
+    assertThat(downloader.flights).isEmpty();
+  }
+
+  @Test public void abortingLoneLeaderAbortsDownload() throws Exception {
+    Response response = spy(new Response(new ByteArrayInputStream(bytes), true));
+    when(delegate.load(URI_1, true)).thenReturn(response);
+    downloader.load(URI_1, true).abort();
+    verify(response).abort();
+    assertThat(downloader.flights).isEmpty();
+  }
+
+  @Test public void abortingLeaderWithFollowersKeepsDownloading() throws Exception {
+    Response response = spy(new Response(new ByteArrayInputStream(bytes), true));
+    when(delegate.load(URI_1, true)).thenReturn(response);
+    Response leader = downloader.load(URI_1, true);
+    Response follower = downloader.load(URI_1, true);
+    leader.abort();
+    verify(response, never()).abort();
+    leader.getInputStream().close();
+    assertThat(readFully(follower.getInputStream())).isEqualTo(bytes);
+  }
+
+  @Test public void abortedFollowerFailsReads() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    Response follower = downloader.load(URI_1, false);
+    follower.abort();
+    try {
+      follower.getInputStream().read(new byte[10]);
+      fail();
+    } catch (InterruptedIOException expected) {
+    }
+    assertThat(readFully(leader.getInputStream())).isEqualTo(bytes);
+  }
+
+  @Test public void followerAwaitsWholeDownload() throws Exception {
+    Response leader = downloader.load(URI_1, false);
+    Response follower = downloader.load(URI_1, false);
+    final CoalescingDownloader.FollowerInputStream stream =
+        (CoalescingDownloader.FollowerInputStream) follower.getInputStream();
+    Thread waiting = new Thread() {
+      @Override public void run() {
+        try {
+          stream.awaitDownload();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      }
+    };
+    waiting.start();
+    waiting.join(100);
+    assertThat(waiting.isAlive()).isTrue();
+    readFully(leader.getInputStream());
+    waiting.join();
+    assertThat(readFully(stream)).isEqualTo(bytes);
+  }
+
+  @Test public void abortedFollowerStopsAwaitingDownload() throws Exception {
+    downloader.load(URI_1, false);
+    Response follower = downloader.load(URI_1, false);
+    follower.abort();
+    try {
+      ((CoalescingDownloader.FollowerInputStream) follower.getInputStream()).awaitDownload();
+      fail();
+    } catch (InterruptedIOException expected) {
+    }
+  }
+
+  @Test public void bitmapResponsesAreNotShared() throws Exception {
+    when(delegate.load(URI_1, true)).thenReturn(new Response(BITMAP_1, true));
+    assertThat(downloader.load(URI_1, true).getBitmap()).isSameAs(BITMAP_1);
+    assertThat(downloader.load(URI_1, true).getBitmap()).isSameAs(BITMAP_1);
+    verify(delegate, times(2)).load(URI_1, true);
+    assertThat(downloader.flights).isEmpty();
+  }
+
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    stream.close();
+    return out.toByteArray();
+  }
+}
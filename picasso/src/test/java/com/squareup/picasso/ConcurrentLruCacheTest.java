@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.graphics.Bitmap;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.graphics.Bitmap.Config.ALPHA_8;
+import static com.squareup.picasso.TestUtils.cacheKey;
+import static com.squareup.picasso.TestUtils.resizedCacheKey;
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ConcurrentLruCacheTest {
+  // The use of ALPHA_8 simplifies the size math in tests since only one byte is used per-pixel.
+  private final Bitmap A = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap B = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap C = Bitmap.createBitmap(1, 1, ALPHA_8);
+  private final Bitmap D = Bitmap.createBitmap(1, 1, ALPHA_8);
+
+  @Test public void constructorDoesNotAllowZeroCacheSize() {
+    try {
+      new ConcurrentLruCache(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void constructorDoesNotAllowZeroConcurrencyLevel() {
+    try {
+      new ConcurrentLruCache(3, 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void cannotPutNullKey() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(3);
+    try {
+      cache.set(null, A);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void cannotPutNullValue() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(3);
+    try {
+      cache.set(cacheKey("a"), null);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void hitsAndMissesAreCounted() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(3);
+    cache.set(cacheKey("a"), A);
+    assertThat(cache.get(cacheKey("a"))).isSameAs(A);
+    assertThat(cache.get(cacheKey("b"))).isNull();
+    assertThat(cache.putCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test public void evictsLeastRecentlyUsed() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(3);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
+    cache.get(cacheKey("a"));
+    cache.set(cacheKey("d"), D);
+    assertThat(cache.get(cacheKey("b"))).isNull();
+    assertThat(cache.get(cacheKey("a"))).isSameAs(A);
+    assertThat(cache.get(cacheKey("c"))).isSameAs(C);
+    assertThat(cache.get(cacheKey("d"))).isSameAs(D);
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.evictionCount()).isEqualTo(1);
+  }
+
+  @Test public void evictsInBatches() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(100);
+    for (int i = 0; i < 101; i++) {
+      cache.set(cacheKey(String.valueOf(i)), A);
+    }
+    assertThat(cache.size()).isEqualTo(90);
+    assertThat(cache.evictionCount()).isEqualTo(11);
+    assertThat(cache.get(cacheKey("10"))).isNull();
+    assertThat(cache.get(cacheKey("11"))).isSameAs(A);
+    for (int i = 101; i < 111; i++) {
+      cache.set(cacheKey(String.valueOf(i)), A);
+    }
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.evictionCount()).isEqualTo(11);
+  }
+
+  @Test public void replacingValueDoesNotChangeSize() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(3);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("a"), B);
+    assertThat(cache.get(cacheKey("a"))).isSameAs(B);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.evictionCount()).isZero();
+  }
+
+  @Test public void evictionWithSingletonCache() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(1);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    assertThat(cache.map).hasSize(1).containsKey(cacheKey("b"));
+  }
+
+  @Test public void evictAll() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(4);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
+    cache.evictAll();
+    assertThat(cache.map).isEmpty();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test public void trimToSizeHoldsCacheUntilRestored() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(4);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
+    cache.trimToSize(1);
+    assertThat(cache.map).hasSize(1).containsKey(cacheKey("c"));
+    cache.set(cacheKey("d"), D);
+    assertThat(cache.map).hasSize(1).containsKey(cacheKey("d"));
+    cache.trimToSize(cache.maxSize());
+    cache.set(cacheKey("a"), A);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test public void trimToSizeSpillsTransformedBitmaps() {
+    ConcurrentLruCache cache = new ConcurrentLruCache(4);
+    DiskResultCache spillCache = mock(DiskResultCache.class);
+    cache.spillCache = spillCache;
+    cache.set(cacheKey("a"), A);
+    cache.set(resizedCacheKey("b"), B);
+    cache.set(resizedCacheKey("c"), C);
+    cache.trimToSize(1);
+    verify(spillCache).spill(resizedCacheKey("b"), B);
+    verifyNoMoreInteractions(spillCache);
+  }
+
+  @Test public void concurrentWritersRespectSharedBudget() throws Exception {
+    final ConcurrentLruCache cache = new ConcurrentLruCache(10);
+    final Bitmap bitmap = Bitmap.createBitmap(1, 1, ALPHA_8);
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final int id = i;
+      threads[i] = new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < 500; j++) {
+            cache.set(cacheKey(id + ":" + j), bitmap);
+            cache.get(cacheKey(id + ":" + (j / 2)));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(cache.size()).isLessThanOrEqualTo(10).isEqualTo(cache.map.size());
+  }
+}
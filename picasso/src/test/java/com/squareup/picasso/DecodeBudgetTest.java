@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DecodeBudgetTest {
+
+  @Test public void constructorDoesNotAllowZeroBudget() {
+    try {
+      new DecodeBudget(0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void workWhichFitsIsAdmittedConcurrently() throws Exception {
+    DecodeBudget budget = new DecodeBudget(10);
+    budget.acquire(4);
+    budget.acquire(4);
+    budget.acquire(2);
+    assertThat(budget.waitCount()).isZero();
+  }
+
+  @Test public void oversizedWorkIsAdmittedAlone() throws Exception {
+    DecodeBudget budget = new DecodeBudget(10);
+    budget.acquire(100);
+    budget.release(100);
+    assertThat(budget.waitCount()).isZero();
+  }
+
+  @Test public void workWhichDoesNotFitWaitsForRelease() throws Exception {
+    final DecodeBudget budget = new DecodeBudget(10);
+    budget.acquire(8);
+    final CountDownLatch admitted = new CountDownLatch(1);
+    new Thread() {
+      @Override public void run() {
+        try {
+          budget.acquire(4);
+          admitted.countDown();
+        } catch (InterruptedIOException ignored) {
+        }
+      }
+    }.start();
+
+    assertThat(admitted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    budget.release(8);
+    assertThat(admitted.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(budget.waitCount()).isEqualTo(1);
+  }
+
+  @Test public void waitersAreAdmittedInOrder() throws Exception {
+    final DecodeBudget budget = new DecodeBudget(10);
+    budget.acquire(6);
+
+    final CountDownLatch largeAdmitted = new CountDownLatch(1);
+    Thread large = new Thread() {
+      @Override public void run() {
+        try {
+          budget.acquire(8);
+          largeAdmitted.countDown();
+        } catch (InterruptedIOException ignored) {
+        }
+      }
+    };
+    large.start();
+    while (large.getState() != Thread.State.WAITING) {
+      Thread.sleep(10);
+    }
+
+    // Fits next to the first acquisition, but must not overtake the waiting one.
+    final CountDownLatch smallAdmitted = new CountDownLatch(1);
+    new Thread() {
+      @Override public void run() {
+        try {
+          budget.acquire(2);
+          smallAdmitted.countDown();
+        } catch (InterruptedIOException ignored) {
+        }
+      }
+    }.start();
+
+    assertThat(smallAdmitted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    budget.release(6);
+    assertThat(largeAdmitted.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(smallAdmitted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static junit.framework.Assert.fail;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DiskStoreTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void constructorDoesNotAllowZeroSize() {
+    try {
+      new DiskStore(temporaryFolder.getRoot(), 0);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test public void commitMakesFileVisible() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    assertThat(store.get("a")).isNull();
+    File temp = write(store, 3);
+    assertThat(store.commit(temp, "a")).isTrue();
+    assertThat(temp).doesNotExist();
+    assertThat(store.get("a")).exists();
+    assertThat(store.size()).isEqualTo(3);
+  }
+
+  @Test public void abortDiscardsTempFile() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    File temp = write(store, 3);
+    store.abort(temp);
+    assertThat(temp).doesNotExist();
+    assertThat(store.size()).isZero();
+  }
+
+  @Test public void replacingFileUpdatesSize() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    store.commit(write(store, 3), "a");
+    store.commit(write(store, 5), "a");
+    assertThat(store.size()).isEqualTo(5);
+  }
+
+  @Test public void evictsLeastRecentlyUsed() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    store.commit(write(store, 4), "a");
+    store.commit(write(store, 4), "b");
+    store.get("a");
+    store.commit(write(store, 4), "c");
+    assertThat(store.get("b")).isNull();
+    assertThat(store.get("a")).exists();
+    assertThat(store.get("c")).exists();
+    assertThat(store.size()).isEqualTo(8);
+  }
+
+  @Test public void rejectsFilesLargerThanStore() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    assertThat(store.commit(write(store, 11), "a")).isFalse();
+    assertThat(store.get("a")).isNull();
+  }
+
+  @Test public void existingFilesAreReadAndTempFilesDeleted() throws IOException {
+    DiskStore first = new DiskStore(temporaryFolder.getRoot(), 10);
+    first.commit(write(first, 3), "a");
+    File leftover = write(first, 2);
+
+    DiskStore second = new DiskStore(temporaryFolder.getRoot(), 10);
+    assertThat(second.size()).isEqualTo(3);
+    assertThat(second.get("a")).exists();
+    assertThat(leftover).doesNotExist();
+  }
+
+  @Test public void clearDeletesEverything() throws IOException {
+    DiskStore store = new DiskStore(temporaryFolder.getRoot(), 10);
+    store.commit(write(store, 3), "a");
+    store.commit(write(store, 3), "b");
+    store.clear();
+    assertThat(store.size()).isZero();
+    assertThat(temporaryFolder.getRoot().listFiles()).isEmpty();
+  }
+
+  @Test public void namesAreStableHexDigests() {
+    assertThat(DiskStore.nameFor("a")).isEqualTo(DiskStore.nameFor("a")).hasSize(32)
+        .matches("[0-9a-f]+");
+    assertThat(DiskStore.nameFor("a")).isNotEqualTo(DiskStore.nameFor("b"));
+  }
+
+  private static File write(DiskStore store, int length) throws IOException {
+    File temp = store.newTempFile();
+    FileOutputStream os = new FileOutputStream(temp);
+    try {
+      os.write(new byte[length]);
+    } finally {
+      os.close();
+    }
+    return temp;
+  }
+}
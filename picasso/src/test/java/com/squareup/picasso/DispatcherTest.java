@@ -3,6 +3,7 @@ package com.squareup.picasso;
 import android.content.Context;
 import android.net.NetworkInfo;
 import android.os.Handler;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,12 +13,18 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import static com.squareup.picasso.TestUtils.BITMAP_1;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
 import static com.squareup.picasso.TestUtils.BITMAP_2;
+import static com.squareup.picasso.TestUtils.FILE_1_URL;
+import static com.squareup.picasso.TestUtils.FILE_KEY_1;
 import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_2;
 import static com.squareup.picasso.TestUtils.mockHunter;
+import static com.squareup.picasso.TestUtils.mockImageViewTarget;
 import static com.squareup.picasso.TestUtils.mockNetworkInfo;
 import static com.squareup.picasso.TestUtils.mockRequest;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -77,6 +84,38 @@ public class DispatcherTest {
     verify(service).submit(any(BitmapHunter.class));
   }
 
+  @Test public void performSubmitWithHigherPriorityRequestRaisesHunterPriority() throws Exception {
+    Request request1 = mockRequest(URI_KEY_1, URI_1);
+    Request request2 = mockRequest(URI_KEY_1, URI_1);
+    when(request1.getPriority()).thenReturn(Picasso.Priority.LOW);
+    when(request2.getPriority()).thenReturn(Picasso.Priority.HIGH);
+    dispatcher.performSubmit(request1);
+    BitmapHunter hunter = dispatcher.hunterMap.get(URI_KEY_1);
+    assertThat(hunter.priority).isEqualTo(Picasso.Priority.LOW);
+    dispatcher.performSubmit(request2);
+    assertThat(hunter.priority).isEqualTo(Picasso.Priority.HIGH);
+  }
+
+  @Test public void performSubmitWithLowerPriorityRequestKeepsHunterPriority() throws Exception {
+    Request request1 = mockRequest(URI_KEY_1, URI_1);
+    Request request2 = mockRequest(URI_KEY_1, URI_1);
+    when(request1.getPriority()).thenReturn(Picasso.Priority.HIGH);
+    when(request2.getPriority()).thenReturn(Picasso.Priority.LOW);
+    dispatcher.performSubmit(request1);
+    dispatcher.performSubmit(request2);
+    assertThat(dispatcher.hunterMap.get(URI_KEY_1).priority).isEqualTo(Picasso.Priority.HIGH);
+  }
+
+  @Test public void performSubmitWithLocalRequestQueuesHunterOnLocalService() throws Exception {
+    ExecutorService localService = mock(ExecutorService.class);
+    Dispatcher dispatcher = new Dispatcher(context, service, localService, null,
+        mainThreadHandler, downloader, cache, null);
+    dispatcher.performSubmit(mockRequest(FILE_KEY_1, FILE_1_URL));
+    dispatcher.performSubmit(mockRequest(URI_KEY_1, URI_1));
+    verify(localService).submit(any(FileBitmapHunter.class));
+    verify(service).submit(any(NetworkBitmapHunter.class));
+  }
+
   @Test public void performSubmitWithShutdownServiceIgnoresRequest() throws Exception {
     when(service.isShutdown()).thenReturn(true);
     Request request = mockRequest(URI_KEY_1, URI_1);
@@ -96,6 +135,89 @@ public class DispatcherTest {
     verify(service, never()).submit(any(BitmapHunter.class));
   }
 
+  @Test public void performSubmitWithPausedTagParksRequest() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    dispatcher.performPauseTag("tag");
+    dispatcher.performSubmit(request);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    assertThat(dispatcher.pausedRequests).containsValue(request);
+    verify(service, never()).submit(any(BitmapHunter.class));
+  }
+
+  @Test public void performPauseTagParksRequestsOfPendingHunter() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request));
+    when(hunter.cancel()).thenReturn(true);
+    dispatcher.hunterMap.put(URI_KEY_1, hunter);
+    dispatcher.performPauseTag("tag");
+    verify(hunter).detach(request);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    assertThat(dispatcher.pausedRequests).containsValue(request);
+  }
+
+  @Test public void performPauseTagLetsStartedHunterFinish() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request));
+    when(hunter.cancel()).thenReturn(true);
+    hunter.started = true;
+    dispatcher.hunterMap.put(URI_KEY_1, hunter);
+    dispatcher.performPauseTag("tag");
+    verify(hunter, never()).detach(request);
+    verify(hunter, never()).cancel();
+    assertThat(dispatcher.hunterMap).hasSize(1);
+    assertThat(dispatcher.pausedRequests).isEmpty();
+  }
+
+  @Test public void performPauseTagKeepsHunterWithOtherRequests() throws Exception {
+    Request request1 = mockRequest(URI_KEY_1, URI_1);
+    Request request2 = mockRequest(URI_KEY_1, URI_1);
+    when(request1.getTag()).thenReturn("tag");
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request1, request2));
+    dispatcher.hunterMap.put(URI_KEY_1, hunter);
+    dispatcher.performPauseTag("tag");
+    verify(hunter, never()).detach(any(Request.class));
+    assertThat(dispatcher.hunterMap).hasSize(1);
+    assertThat(dispatcher.pausedRequests).isEmpty();
+  }
+
+  @Test public void performResumeTagSubmitsParkedRequests() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    dispatcher.performPauseTag("tag");
+    dispatcher.performSubmit(request);
+    dispatcher.performResumeTag("tag");
+    assertThat(dispatcher.pausedRequests).isEmpty();
+    assertThat(dispatcher.hunterMap).hasSize(1);
+    verify(service).submit(any(BitmapHunter.class));
+  }
+
+  @Test public void performResumeTagDropsCancelledRequests() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    dispatcher.performPauseTag("tag");
+    dispatcher.performSubmit(request);
+    when(request.isCancelled()).thenReturn(true);
+    dispatcher.performResumeTag("tag");
+    assertThat(dispatcher.pausedRequests).isEmpty();
+    assertThat(dispatcher.hunterMap).isEmpty();
+    verify(service, never()).submit(any(BitmapHunter.class));
+  }
+
+  @Test public void performCancelRemovesParkedRequest() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    when(request.getTag()).thenReturn("tag");
+    dispatcher.performPauseTag("tag");
+    dispatcher.performSubmit(request);
+    dispatcher.performCancel(request);
+    assertThat(dispatcher.pausedRequests).isEmpty();
+  }
+
   @Test public void performCancelDetachesRequestAndCleansMap() throws Exception {
     Request request = mockRequest(URI_KEY_1, URI_1);
     BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
@@ -175,6 +297,29 @@ public class DispatcherTest {
     assertThat(dispatcher.batch).isEmpty();
   }
 
+  @Test public void performTransformQueuesHunterOnTransformService() throws Exception {
+    ExecutorService transformService = mock(ExecutorService.class);
+    Dispatcher dispatcher = new Dispatcher(context, service, null, transformService,
+        mainThreadHandler, downloader, cache, null);
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(mockRequest(URI_KEY_1, URI_1)));
+    dispatcher.performTransform(hunter);
+    assertThat(hunter.transforming).isTrue();
+    verify(transformService).submit(hunter);
+    verifyZeroInteractions(service);
+  }
+
+  @Test public void performTransformWithoutRequestsDropsHunter() throws Exception {
+    ExecutorService transformService = mock(ExecutorService.class);
+    Dispatcher dispatcher = new Dispatcher(context, service, null, transformService,
+        mainThreadHandler, downloader, cache, null);
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    dispatcher.hunterMap.put(URI_KEY_1, hunter);
+    dispatcher.performTransform(hunter);
+    assertThat(dispatcher.hunterMap).isEmpty();
+    verifyZeroInteractions(transformService);
+  }
+
   @Test public void performRetryTwoTimesBeforeError() throws Exception {
     BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
     dispatcher.performRetry(hunter);
@@ -200,6 +345,74 @@ public class DispatcherTest {
     verify(service, never()).submit(hunter);
   }
 
+  @Test public void performRetryWhileOfflineSkipsToCacheOnlyAttempt() throws Exception {
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.isNetwork()).thenReturn(true);
+    dispatcher.connected = false;
+    dispatcher.performRetry(hunter);
+    verify(service).submit(hunter);
+    assertThat(hunter.retryCount).isEqualTo(0);
+  }
+
+  @Test public void performRetryWhileOfflineParksRequestsWithTargets() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1, mockImageViewTarget());
+    Request fetch = mockRequest(URI_KEY_1, URI_1);
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.isNetwork()).thenReturn(true);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request, fetch));
+    hunter.retryCount = 0;
+    dispatcher.airplaneMode = true;
+    dispatcher.performRetry(hunter);
+    assertThat(dispatcher.failedRequests).hasSize(1);
+    assertThat(dispatcher.failedRequests.values()).containsOnly(request);
+    assertThat(request.willReplay).isTrue();
+  }
+
+  @Test public void performRetryWhileOnlineDoesNotParkRequests() throws Exception {
+    Request request = mockRequest(URI_KEY_1, URI_1, mockImageViewTarget());
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.isNetwork()).thenReturn(true);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request));
+    hunter.retryCount = 0;
+    dispatcher.performRetry(hunter);
+    assertThat(dispatcher.failedRequests).isEmpty();
+  }
+
+  @Test public void performCancelRemovesParkedRequest() throws Exception {
+    Object target = mockImageViewTarget();
+    Request request = mockRequest(URI_KEY_1, URI_1, target);
+    dispatcher.failedRequests.put(target, request);
+    dispatcher.performCancel(request);
+    assertThat(dispatcher.failedRequests).isEmpty();
+  }
+
+  @Test public void performNetworkStateChangeReplaysInPriorityOrder() throws Exception {
+    Object target1 = mockImageViewTarget();
+    Object target2 = mockImageViewTarget();
+    Request low = mockRequest(URI_KEY_1, URI_1, target1);
+    Request high = mockRequest(URI_KEY_2, URI_2, target2);
+    when(low.getPriority()).thenReturn(Picasso.Priority.LOW);
+    when(high.getPriority()).thenReturn(Picasso.Priority.HIGH);
+    dispatcher.failedRequests.put(target1, low);
+    dispatcher.failedRequests.put(target2, high);
+    dispatcher.connected = false;
+    NetworkInfo info = mockNetworkInfo();
+    when(info.isConnected()).thenReturn(true);
+    dispatcher.performNetworkStateChange(info);
+    assertThat(dispatcher.failedRequests).isEmpty();
+    assertThat(dispatcher.hunterMap.keySet()).containsExactly(URI_KEY_2, URI_KEY_1);
+  }
+
+  @Test public void performNetworkStateChangeWhileDisconnectedDoesNotReplay() throws Exception {
+    Object target = mockImageViewTarget();
+    Request request = mockRequest(URI_KEY_1, URI_1, target);
+    dispatcher.failedRequests.put(target, request);
+    dispatcher.performNetworkStateChange(mockNetworkInfo());
+    assertThat(dispatcher.connected).isFalse();
+    assertThat(dispatcher.failedRequests).hasSize(1);
+    verifyZeroInteractions(service);
+  }
+
   @Test public void performAirplaneModeChange() throws Exception {
     assertThat(dispatcher.airplaneMode).isFalse();
     dispatcher.performAirplaneModeChange(true);
@@ -208,6 +421,38 @@ public class DispatcherTest {
     assertThat(dispatcher.airplaneMode).isFalse();
   }
 
+  @Test public void performTrimMemoryHoldsCacheToSmallestSize() throws Exception {
+    when(cache.maxSize()).thenReturn(100);
+    dispatcher.performTrimMemory(TRIM_MEMORY_MODERATE);
+    verify(cache).trimToSize(25);
+    dispatcher.performTrimMemory(TRIM_MEMORY_RUNNING_MODERATE);
+    verify(cache, never()).trimToSize(75);
+    assertThat(dispatcher.trimmedCacheSize).isEqualTo(25);
+    assertThat(dispatcher.handler.hasMessages(Dispatcher.RESTORE_MEMORY)).isTrue();
+  }
+
+  @Test public void performRestoreMemoryRestoresFullSize() throws Exception {
+    when(cache.maxSize()).thenReturn(100);
+    dispatcher.performTrimMemory(TRIM_MEMORY_COMPLETE);
+    verify(cache).trimToSize(0);
+    dispatcher.performRestoreMemory();
+    verify(cache).trimToSize(100);
+    assertThat(dispatcher.trimmedCacheSize).isEqualTo(-1);
+  }
+
+  @Test public void performTrimMemoryTrimsBitmapPoolUntilRestored() throws Exception {
+    when(cache.maxSize()).thenReturn(100);
+    BitmapPool bitmapPool = new BitmapPool(1000);
+    Dispatcher dispatcher = new Dispatcher(context, service, null, null, mainThreadHandler,
+        downloader, cache, bitmapPool);
+    dispatcher.performTrimMemory(TRIM_MEMORY_MODERATE);
+    assertThat(bitmapPool.sizeLimit).isEqualTo(250);
+    dispatcher.performTrimMemory(TRIM_MEMORY_COMPLETE);
+    assertThat(bitmapPool.sizeLimit).isZero();
+    dispatcher.performRestoreMemory();
+    assertThat(bitmapPool.sizeLimit).isEqualTo(1000);
+  }
+
   @Test public void performNetworkStateChangeWithNullInfoIgnores() throws Exception {
     dispatcher.performNetworkStateChange(null);
     verifyZeroInteractions(service);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.Downloader.Response;
+import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DownloadCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final byte[] bytes = new byte[20000];
+  private DownloadCache cache;
+
+  @Before public void setUp() {
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    cache = new DownloadCache(temporaryFolder.getRoot(), 100000);
+  }
+
+  @Test public void committedDownloadIsServed() throws Exception {
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, new ByteArrayInputStream(bytes));
+    assertThat(readFully(tee, 1024)).isEqualTo(bytes);
+    tee.commit();
+    Response response = cache.get(URI_1);
+    assertThat(response.cached).isTrue();
+    assertThat(response.getContentLength()).isEqualTo(bytes.length);
+    assertThat(readFully(response.getInputStream(), 1024)).isEqualTo(bytes);
+    assertThat(cache.get(URI_2)).isNull();
+  }
+
+  @Test public void commitStoresTheRestOfTheDownload() throws Exception {
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, new ByteArrayInputStream(bytes));
+    tee.read(new byte[100]);
+    tee.skip(50);
+    tee.commit();
+    assertThat(readFully(cache.get(URI_1).getInputStream(), 1024)).isEqualTo(bytes);
+  }
+
+  @Test public void abortedDownloadIsNotServed() throws Exception {
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, new ByteArrayInputStream(bytes));
+    readFully(tee, 1024);
+    tee.abort();
+    assertThat(cache.get(URI_1)).isNull();
+    assertThat(cache.store.size()).isZero();
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test public void failedDownloadIsNotServed() throws Exception {
+    InputStream failing = new InputStream() {
+      @Override public int read() throws IOException {
+        throw new IOException("Connection reset.");
+      }
+    };
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, failing);
+    tee.commit();
+    assertThat(cache.get(URI_1)).isNull();
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test public void removeDiscardsDownload() throws Exception {
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, new ByteArrayInputStream(bytes));
+    tee.commit();
+    cache.remove(URI_1);
+    assertThat(cache.get(URI_1)).isNull();
+  }
+
+  @Test public void servedStreamCanBeReset() throws Exception {
+    DownloadCache.TeeInputStream tee = cache.tee(URI_1, new ByteArrayInputStream(bytes));
+    tee.commit();
+    InputStream stream = cache.get(URI_1).getInputStream();
+    assertThat(stream.markSupported()).isTrue();
+    stream.skip(10);
+    stream.mark(1024);
+    assertThat(stream.read()).isEqualTo(10);
+    stream.reset();
+    assertThat(readFully(stream, 7).length).isEqualTo(bytes.length - 10);
+  }
+
+  private static byte[] readFully(InputStream stream, int chunk) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[chunk];
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ImageHeaderParserTest {
+  @Test public void jpegFrameHeaderAfterMetadata() throws Exception {
+    byte[] exif = new byte[3000];
+    byte[] image = bytes(0xFF, 0xD8, // SOI
+        0xFF, 0xE1, (exif.length + 2) >> 8, (exif.length + 2) & 0xFF);
+    image = concat(image, exif, bytes(0xFF, 0xFF, // Fill byte.
+        0xFF, 0xC2, 0x00, 0x11, 0x08, 0x01, 0xE0, 0x02, 0x80, 0x03), new byte[100]);
+    assertParsed(image, 640, 480, "image/jpeg");
+  }
+
+  @Test public void jpegWithoutFrameHeaderIsNotParsed() throws Exception {
+    byte[] image = concat(bytes(0xFF, 0xD8, 0xFF, 0xDA, 0x00, 0x08), new byte[100]);
+    assertNotParsed(image);
+  }
+
+  @Test public void jpegWithMetadataBeyondLimitIsNotParsed() throws Exception {
+    byte[] segment = concat(bytes(0xFF, 0xE2, 0xFF, 0xFF), new byte[0xFFFD]);
+    byte[] image = concat(bytes(0xFF, 0xD8), segment, segment, segment,
+        bytes(0xFF, 0xC0, 0x00, 0x11, 0x08, 0x01, 0xE0, 0x02, 0x80, 0x03));
+    assertNotParsed(image);
+  }
+
+  @Test public void png() throws Exception {
+    byte[] image = concat(bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', //
+        0x00, 0x00, 0x00, 0x0D, 'I', 'H', 'D', 'R', //
+        0x00, 0x00, 0x01, 0x2C, 0x00, 0x00, 0x00, 0xC8), new byte[50]);
+    assertParsed(image, 300, 200, "image/png");
+  }
+
+  @Test public void gif() throws Exception {
+    byte[] image = concat(bytes('G', 'I', 'F', '8', '9', 'a', 0x2C, 0x01, 0xC8, 0x00),
+        new byte[50]);
+    assertParsed(image, 300, 200, "image/gif");
+  }
+
+  @Test public void lossyWebp() throws Exception {
+    byte[] image = concat(webp('V', 'P', '8', ' '), bytes(0x00, 0x00, 0x00, 0x9D, 0x01, 0x2A,
+        0x2C, 0x01, 0xC8, 0x00), new byte[50]);
+    assertParsed(image, 300, 200, "image/webp");
+  }
+
+  @Test public void losslessWebp() throws Exception {
+    int bits = (300 - 1) | (200 - 1) << 14;
+    byte[] image = concat(webp('V', 'P', '8', 'L'), bytes(0x2F, bits & 0xFF, bits >> 8 & 0xFF,
+        bits >> 16 & 0xFF, bits >> 24 & 0xFF), new byte[50]);
+    assertParsed(image, 300, 200, "image/webp");
+  }
+
+  @Test public void extendedWebp() throws Exception {
+    byte[] image = concat(webp('V', 'P', '8', 'X'), bytes(0x00, 0x00, 0x00, 0x00,
+        0x2B, 0x01, 0x00, 0xC7, 0x00, 0x00), new byte[50]);
+    assertParsed(image, 300, 200, "image/webp");
+  }
+
+  @Test public void unknownFormatIsNotParsed() throws Exception {
+    assertNotParsed(concat(bytes('B', 'M'), new byte[100]));
+  }
+
+  @Test public void truncatedHeaderIsNotParsed() throws Exception {
+    assertNotParsed(bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0x00));
+  }
+
+  private static void assertParsed(byte[] image, int width, int height, String mimeType)
+      throws IOException {
+    ImageHeaderParser parser = new ImageHeaderParser(new ByteArrayInputStream(image));
+    assertThat(parser.parse()).isTrue();
+    assertThat(parser.width).isEqualTo(width);
+    assertThat(parser.height).isEqualTo(height);
+    assertThat(parser.mimeType).isEqualTo(mimeType);
+    assertThat(readFully(parser.stream())).isEqualTo(image);
+  }
+
+  private static void assertNotParsed(byte[] image) throws IOException {
+    ImageHeaderParser parser = new ImageHeaderParser(new ByteArrayInputStream(image));
+    assertThat(parser.parse()).isFalse();
+    assertThat(readFully(parser.stream())).isEqualTo(image);
+  }
+
+  /** A RIFF header and the header of a first chunk of type {@code chunk}. */
+  private static byte[] webp(int... chunk) {
+    return concat(bytes('R', 'I', 'F', 'F', 0x00, 0x00, 0x00, 0x00, 'W', 'E', 'B', 'P'),
+        bytes(chunk), bytes(0x00, 0x00, 0x00, 0x00));
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -31,6 +31,7 @@ import static com.squareup.picasso.TestUtils.URI_1;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
 import static com.squareup.picasso.TestUtils.mockCallback;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
+import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -51,7 +52,7 @@ public class ImageViewRequestTest {
   public void invokesTargetAndCallbackSuccessIfTargetIsNotNull() throws Exception {
     Picasso picasso =
         new Picasso(Robolectric.application, mock(Dispatcher.class),
-            Cache.NONE, null, mock(Stats.class), true);
+            Cache.NONE, null, null, null, null, null, null, mock(Stats.class), false, false, true);
     ImageView target = mockImageViewTarget();
     Callback callback = mockCallback();
     ImageViewRequest request =
@@ -62,6 +63,24 @@ public class ImageViewRequestTest {
     verify(callback).onSuccess();
   }
 
+  @Test
+  public void completeCancelsThumbnail() throws Exception {
+    Dispatcher dispatcher = mock(Dispatcher.class);
+    Picasso picasso = new Picasso(Robolectric.application, dispatcher, Cache.NONE, null, null,
+        null, null, null, null, mock(Stats.class), false, false, true);
+    ImageView target = mockImageViewTarget();
+    ImageViewRequest request =
+        new ImageViewRequest(picasso, URI_1, 0, target, null, null, false, false, 0, null,
+            URI_KEY_1, null);
+    ThumbnailRequest thumbnail =
+        new ThumbnailRequest(picasso, URI_1, 0, target, null, null, false, false, URI_KEY_1);
+    request.thumbnail = thumbnail;
+    request.complete(BITMAP_1, MEMORY);
+    assertThat(thumbnail.isCancelled()).isTrue();
+    assertThat(request.thumbnail).isNull();
+    verify(dispatcher).dispatchCancel(thumbnail);
+  }
+
   @Test
   public void invokesTargetAndCallbackErrorIfTargetIsNotNullWithErrorResourceId() throws Exception {
     ImageView target = mockImageViewTarget();
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+
+  @Test public void emptyHistogramReportsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.count()).isZero();
+    assertThat(histogram.percentile(50)).isZero();
+    assertThat(histogram.percentile(99)).isZero();
+  }
+
+  @Test public void percentilesReportBucketUpperBounds() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 50; i++) {
+      histogram.record(0);
+    }
+    for (int i = 0; i < 40; i++) {
+      histogram.record(20);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(300);
+    }
+    assertThat(histogram.count()).isEqualTo(100);
+    assertThat(histogram.percentile(50)).isEqualTo(1);
+    assertThat(histogram.percentile(90)).isEqualTo(32);
+    assertThat(histogram.percentile(99)).isEqualTo(512);
+  }
+
+  @Test public void powersOfTwoStartTheirOwnBucket() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(64);
+    assertThat(histogram.percentile(50)).isEqualTo(128);
+  }
+
+  @Test public void latenciesBeyondTheLastBucketAreClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    assertThat(histogram.percentile(99))
+        .isEqualTo(1L << (LatencyHistogram.BUCKET_COUNT - 1));
+  }
+}
@@ -27,8 +27,13 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import static android.graphics.Bitmap.Config.ALPHA_8;
+import static com.squareup.picasso.TestUtils.cacheKey;
+import static com.squareup.picasso.TestUtils.resizedCacheKey;
 import static junit.framework.Assert.fail;
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(manifest = Config.NONE)
@@ -49,48 +54,48 @@ public class LruCacheTest {
     LruCache cache = new LruCache(3);
     assertStatistics(cache);
 
-    cache.set("a", A);
+    cache.set(cacheKey("a"), A);
     expectedPutCount++;
     assertStatistics(cache);
-    assertHit(cache, "a", A);
+    assertHit(cache, cacheKey("a"), A);
 
-    cache.set("b", B);
+    cache.set(cacheKey("b"), B);
     expectedPutCount++;
     assertStatistics(cache);
-    assertHit(cache, "a", A);
-    assertHit(cache, "b", B);
-    assertSnapshot(cache, "a", A, "b", B);
+    assertHit(cache, cacheKey("a"), A);
+    assertHit(cache, cacheKey("b"), B);
+    assertSnapshot(cache, cacheKey("a"), A, cacheKey("b"), B);
 
-    cache.set("c", C);
+    cache.set(cacheKey("c"), C);
     expectedPutCount++;
     assertStatistics(cache);
-    assertHit(cache, "a", A);
-    assertHit(cache, "b", B);
-    assertHit(cache, "c", C);
-    assertSnapshot(cache, "a", A, "b", B, "c", C);
+    assertHit(cache, cacheKey("a"), A);
+    assertHit(cache, cacheKey("b"), B);
+    assertHit(cache, cacheKey("c"), C);
+    assertSnapshot(cache, cacheKey("a"), A, cacheKey("b"), B, cacheKey("c"), C);
 
-    cache.set("d", D);
+    cache.set(cacheKey("d"), D);
     expectedPutCount++;
     expectedEvictionCount++; // a should have been evicted
     assertStatistics(cache);
-    assertMiss(cache, "a");
-    assertHit(cache, "b", B);
-    assertHit(cache, "c", C);
-    assertHit(cache, "d", D);
-    assertHit(cache, "b", B);
-    assertHit(cache, "c", C);
-    assertSnapshot(cache, "d", D, "b", B, "c", C);
-
-    cache.set("e", E);
+    assertMiss(cache, cacheKey("a"));
+    assertHit(cache, cacheKey("b"), B);
+    assertHit(cache, cacheKey("c"), C);
+    assertHit(cache, cacheKey("d"), D);
+    assertHit(cache, cacheKey("b"), B);
+    assertHit(cache, cacheKey("c"), C);
+    assertSnapshot(cache, cacheKey("d"), D, cacheKey("b"), B, cacheKey("c"), C);
+
+    cache.set(cacheKey("e"), E);
     expectedPutCount++;
     expectedEvictionCount++; // d should have been evicted
     assertStatistics(cache);
-    assertMiss(cache, "d");
-    assertMiss(cache, "a");
-    assertHit(cache, "e", E);
-    assertHit(cache, "b", B);
-    assertHit(cache, "c", C);
-    assertSnapshot(cache, "e", E, "b", B, "c", C);
+    assertMiss(cache, cacheKey("d"));
+    assertMiss(cache, cacheKey("a"));
+    assertHit(cache, cacheKey("e"), E);
+    assertHit(cache, cacheKey("b"), B);
+    assertHit(cache, cacheKey("c"), C);
+    assertSnapshot(cache, cacheKey("e"), E, cacheKey("b"), B, cacheKey("c"), C);
   }
 
   @Test public void constructorDoesNotAllowZeroCacheSize() {
@@ -113,7 +118,7 @@ public class LruCacheTest {
   @Test public void cannotPutNullValue() {
     LruCache cache = new LruCache(3);
     try {
-      cache.set("a", null);
+      cache.set(cacheKey("a"), null);
       fail();
     } catch (NullPointerException expected) {
     }
@@ -121,9 +126,9 @@ public class LruCacheTest {
 
   @Test public void evictionWithSingletonCache() {
     LruCache cache = new LruCache(1);
-    cache.set("a", A);
-    cache.set("b", B);
-    assertSnapshot(cache, "b", B);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    assertSnapshot(cache, cacheKey("b"), B);
   }
 
   /**
@@ -133,29 +138,56 @@ public class LruCacheTest {
   @Test public void putCauseEviction() {
     LruCache cache = new LruCache(3);
 
-    cache.set("a", A);
-    cache.set("b", B);
-    cache.set("c", C);
-    cache.set("b", D);
-    assertSnapshot(cache, "a", A, "c", C, "b", D);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
+    cache.set(cacheKey("b"), D);
+    assertSnapshot(cache, cacheKey("a"), A, cacheKey("c"), C, cacheKey("b"), D);
   }
 
   @Test public void evictAll() {
     LruCache cache = new LruCache(4);
-    cache.set("a", A);
-    cache.set("b", B);
-    cache.set("c", C);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
     cache.evictAll();
     assertThat(cache.map).isEmpty();
   }
 
-  private void assertHit(LruCache cache, String key, Bitmap value) {
+  @Test public void trimToSizeHoldsCacheUntilRestored() {
+    LruCache cache = new LruCache(4);
+    cache.set(cacheKey("a"), A);
+    cache.set(cacheKey("b"), B);
+    cache.set(cacheKey("c"), C);
+    cache.trimToSize(1);
+    assertSnapshot(cache, cacheKey("c"), C);
+    cache.set(cacheKey("d"), D);
+    assertSnapshot(cache, cacheKey("d"), D);
+    cache.trimToSize(cache.maxSize());
+    cache.set(cacheKey("e"), E);
+    assertSnapshot(cache, cacheKey("d"), D, cacheKey("e"), E);
+    assertThat(cache.maxSize()).isEqualTo(4);
+  }
+
+  @Test public void trimToSizeSpillsTransformedBitmaps() {
+    LruCache cache = new LruCache(4);
+    DiskResultCache spillCache = mock(DiskResultCache.class);
+    cache.spillCache = spillCache;
+    cache.set(cacheKey("a"), A);
+    cache.set(resizedCacheKey("b"), B);
+    cache.set(resizedCacheKey("c"), C);
+    cache.trimToSize(1);
+    verify(spillCache).spill(resizedCacheKey("b"), B);
+    verifyNoMoreInteractions(spillCache);
+  }
+
+  private void assertHit(LruCache cache, RequestKey key, Bitmap value) {
     assertThat(cache.get(key)).isEqualTo(value);
     expectedHitCount++;
     assertStatistics(cache);
   }
 
-  private void assertMiss(LruCache cache, String key) {
+  private void assertMiss(LruCache cache, RequestKey key) {
     assertThat(cache.get(key)).isNull();
     expectedMissCount++;
     assertStatistics(cache);
@@ -170,7 +202,7 @@ public class LruCacheTest {
 
   private void assertSnapshot(LruCache cache, Object... keysAndValues) {
     List<Object> actualKeysAndValues = new ArrayList<Object>();
-    for (Map.Entry<String, Bitmap> entry : cache.map.entrySet()) {
+    for (Map.Entry<RequestKey, Bitmap> entry : cache.map.entrySet()) {
       actualKeysAndValues.add(entry.getKey());
       actualKeysAndValues.add(entry.getValue());
     }
@@ -91,4 +91,15 @@ public class NetworkBitmapHunterTest {
     Bitmap actual = hunter.decode(request.getUri(), null, 2);
     assertThat(actual).isSameAs(expected);
   }
+
+  @Test public void hunterCancelledWhileConnectingAbortsResponse() throws Exception {
+    Downloader.Response response = mock(Downloader.Response.class);
+    when(downloader.load(URI_1, false)).thenReturn(response);
+    Request request = mockRequest(URI_KEY_1, URI_1);
+    NetworkBitmapHunter hunter =
+        new NetworkBitmapHunter(picasso, dispatcher, cache, request, downloader, false);
+    hunter.cancelled = true;
+    hunter.decode(request.getUri(), null, 2);
+    verify(response).abort();
+  }
 }
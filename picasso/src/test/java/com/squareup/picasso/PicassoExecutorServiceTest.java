@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.Picasso.Priority.HIGH;
+import static com.squareup.picasso.Picasso.Priority.LOW;
+import static com.squareup.picasso.Picasso.Priority.NORMAL;
+import static com.squareup.picasso.TestUtils.mockNetworkInfo;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PicassoExecutorServiceTest {
+  private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+  private final CountDownLatch blocker = new CountDownLatch(1);
+  private PicassoExecutorService service;
+
+  @Before public void setUp() {
+    service = new PicassoExecutorService();
+    // A single thread makes the order in which queued hunters run deterministic.
+    NetworkInfo info = mockNetworkInfo();
+    when(info.getType()).thenReturn(ConnectivityManager.TYPE_MOBILE);
+    when(info.getSubtype()).thenReturn(TelephonyManager.NETWORK_TYPE_GPRS);
+    service.adjustThreadCount(info);
+    service.submit(new Runnable() {
+      @Override public void run() {
+        try {
+          blocker.await();
+        } catch (InterruptedException ignored) {
+        }
+      }
+    });
+  }
+
+  @After public void tearDown() {
+    service.shutdownNow();
+  }
+
+  @Test public void higherPriorityRunsFirst() throws Exception {
+    submit("low", LOW);
+    submit("normal", NORMAL);
+    submit("high", HIGH);
+    runQueued();
+    assertThat(ran).containsExactly("high", "normal", "low");
+  }
+
+  @Test public void equalPriorityRunsNewestFirst() throws Exception {
+    submit("first", NORMAL);
+    submit("second", NORMAL);
+    submit("third", NORMAL);
+    runQueued();
+    assertThat(ran).containsExactly("third", "second", "first");
+  }
+
+  @Test public void raisedPriorityIsReordered() throws Exception {
+    BitmapHunter prefetch = submit("prefetch", LOW);
+    submit("normal", NORMAL);
+    service.raisePriority(prefetch, HIGH);
+    runQueued();
+    assertThat(ran).containsExactly("prefetch", "normal");
+  }
+
+  private BitmapHunter submit(final String name, Picasso.Priority priority) {
+    BitmapHunter hunter = mock(BitmapHunter.class);
+    hunter.priority = priority;
+    doAnswer(new Answer<Void>() {
+      @Override public Void answer(InvocationOnMock invocation) {
+        ran.add(name);
+        return null;
+      }
+    }).when(hunter).run();
+    hunter.future = service.submit(hunter);
+    return hunter;
+  }
+
+  private void runQueued() throws InterruptedException {
+    blocker.countDown();
+    service.shutdown();
+    assertThat(service.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+}
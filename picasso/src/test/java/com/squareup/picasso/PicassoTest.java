@@ -15,6 +15,8 @@
  */
 package com.squareup.picasso;
 
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.widget.ImageView;
@@ -23,15 +25,20 @@ import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
 import static com.squareup.picasso.Picasso.Listener;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
 import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
+import static com.squareup.picasso.TestUtils.URI_KEY_2;
 import static com.squareup.picasso.TestUtils.mockCanceledRequest;
 import static com.squareup.picasso.TestUtils.mockHunter;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
@@ -63,7 +70,8 @@ public class PicassoTest {
 
   @Before public void setUp() {
     initMocks(this);
-    picasso = new Picasso(context, dispatcher, cache, listener, stats, false);
+    picasso = new Picasso(context, dispatcher, cache, null, null, null, null, listener, null,
+        stats, false, false, false);
   }
 
   @Test public void submitWithNullTargetInvokesDispatcher() throws Exception {
@@ -103,6 +111,7 @@ public class PicassoTest {
     picasso.complete(hunter);
     verify(request1).complete(BITMAP_1, MEMORY);
     verify(request2, never()).complete(eq(BITMAP_1), any(Picasso.LoadedFrom.class));
+    verify(stats).hunterDelivered(hunter);
   }
 
   @Test public void completeInvokesErrorOnAllFailedRequests() throws Exception {
@@ -113,6 +122,30 @@ public class PicassoTest {
     picasso.complete(hunter);
     verify(request1).error();
     verify(request2, never()).error();
+    verify(stats, never()).hunterDelivered(hunter);
+  }
+
+  @Test public void eventsAreReportedWhenEnabled() throws Exception {
+    EventDispatcher events = mock(EventDispatcher.class);
+    picasso = new Picasso(context, dispatcher, cache, null, null, null, null, listener, events,
+        stats, false, false, false);
+    ImageView target = mockImageViewTarget();
+    Request request = mockRequest(URI_KEY_1, URI_1, target);
+    picasso.enqueueAndSubmit(request);
+    verify(events).requestSubmitted(request);
+
+    picasso.enqueueAndSubmit(mockRequest(URI_KEY_2, URI_2, target));
+    verify(events).requestCancelled(URI_KEY_1);
+
+    when(cache.get(URI_KEY_1)).thenReturn(BITMAP_1);
+    picasso.quickMemoryCacheCheck(URI_KEY_1);
+    verify(events).memoryHit(URI_KEY_1);
+
+    BitmapHunter hunter = mockHunter(URI_KEY_1, BITMAP_1, false);
+    when(hunter.getRequests()).thenReturn(Arrays.asList(request));
+    when(hunter.getLoadedFrom()).thenReturn(MEMORY);
+    picasso.complete(hunter);
+    verify(events).delivered(URI_KEY_1, MEMORY);
   }
 
   @Test public void cancelExistingRequestWithUnknownTarget() throws Exception {
@@ -145,6 +178,14 @@ public class PicassoTest {
     verify(dispatcher).dispatchCancel(request);
   }
 
+  @Test public void pauseAndResumeTagInvokeDispatcher() throws Exception {
+    Object tag = new Object();
+    picasso.pauseTag(tag);
+    verify(dispatcher).dispatchPauseTag(tag);
+    picasso.resumeTag(tag);
+    verify(dispatcher).dispatchResumeTag(tag);
+  }
+
   @Test public void shutdown() throws Exception {
     picasso.shutdown();
     verify(cache).clear();
@@ -153,6 +194,18 @@ public class PicassoTest {
     assertThat(picasso.shutdown).isTrue();
   }
 
+  @Test public void memoryPressureIsForwardedToDispatcher() throws Exception {
+    ArgumentCaptor<ComponentCallbacks> captor = ArgumentCaptor.forClass(ComponentCallbacks.class);
+    verify(context).registerComponentCallbacks(captor.capture());
+    ComponentCallbacks2 callbacks = (ComponentCallbacks2) captor.getValue();
+    callbacks.onTrimMemory(TRIM_MEMORY_BACKGROUND);
+    verify(dispatcher).dispatchTrimMemory(TRIM_MEMORY_BACKGROUND);
+    callbacks.onLowMemory();
+    verify(dispatcher).dispatchTrimMemory(TRIM_MEMORY_COMPLETE);
+    picasso.shutdown();
+    verify(context).unregisterComponentCallbacks(callbacks);
+  }
+
   @Test public void shutdownTwice() throws Exception {
     picasso.shutdown();
     picasso.shutdown();
@@ -193,6 +246,39 @@ public class PicassoTest {
     }
   }
 
+  @Test public void builderInvalidEventListener() throws Exception {
+    try {
+      new Picasso.Builder(context).eventListener(null);
+      fail("Null event listener should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    EventListener eventListener = new EventListener() {
+    };
+    try {
+      new Picasso.Builder(context).eventListener(eventListener).eventListener(eventListener);
+      fail("Setting event listener twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void builderInvalidAdaptiveThreadCount() throws Exception {
+    try {
+      new Picasso.Builder(context).adaptiveThreadCount(0, 4);
+      fail("Non-positive minimum should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).adaptiveThreadCount(4, 2);
+      fail("Maximum below minimum should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new Picasso.Builder(context).adaptiveThreadCount(1, 4).adaptiveThreadCount(1, 4);
+      fail("Setting adaptive thread count twice should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
   @Test public void builderInvalidLoader() throws Exception {
     try {
       new Picasso.Builder(context).downloader(null);
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.content.Context;
+import android.net.Uri;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.TestUtils.BITMAP_1;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PrefetcherTest {
+
+  @Mock Context context;
+  @Mock Dispatcher dispatcher;
+  @Mock Cache cache;
+  @Mock Stats stats;
+
+  private Picasso picasso;
+  private List<RequestBuilder> requests;
+
+  @Before public void setUp() {
+    initMocks(this);
+    picasso = new Picasso(context, dispatcher, cache, null, null, null, null, null, null, stats,
+        false, false, false);
+    requests = new ArrayList<RequestBuilder>();
+    for (int i = 0; i < 10; i++) {
+      requests.add(picasso.load(Uri.parse("http://example.com/" + i + ".png")));
+    }
+  }
+
+  @Test public void fetchesAheadOfVisiblePositions() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(3, 4);
+    verify(dispatcher, times(2)).dispatchSubmit(any(Request.class));
+  }
+
+  @Test public void fetchesAreLowPriority() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 1);
+    prefetcher.setVisiblePositions(0, 2);
+    assertThat(prefetcher.fetches.get(3).getPriority()).isEqualTo(Picasso.Priority.LOW);
+  }
+
+  @Test public void cancelsFetchesWhichFellBehind() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    Request passed = prefetcher.fetches.get(3);
+    prefetcher.setVisiblePositions(5, 7);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(8, 9);
+    assertThat(passed.isCancelled()).isTrue();
+    verify(dispatcher).dispatchCancel(passed);
+  }
+
+  @Test public void fetchesBehindWhenScrollingBack() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(5, 7);
+    prefetcher.setVisiblePositions(4, 6);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(2, 3);
+  }
+
+  @Test public void visibleFetchesKeepRunning() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    Request visible = prefetcher.fetches.get(3);
+    prefetcher.setVisiblePositions(1, 3);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(3, 4, 5);
+    assertThat(visible.isCancelled()).isFalse();
+  }
+
+  @Test public void cachedImagesAreNotFetched() {
+    when(cache.get(any(RequestKey.class))).thenReturn(BITMAP_1);
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    assertThat(prefetcher.fetches).isEmpty();
+  }
+
+  @Test public void cacheProbeIsNotCounted() {
+    LruCache lruCache = new LruCache(1000);
+    picasso = new Picasso(context, dispatcher, lruCache, null, null, null, null, null, null, stats,
+        false, false, false);
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(3, 4);
+    assertThat(lruCache.missCount()).isZero();
+  }
+
+  @Test public void finishedFetchesAreNotCancelled() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 2);
+    prefetcher.setVisiblePositions(0, 2);
+    Request finished = prefetcher.fetches.get(3);
+    finished.complete(BITMAP_1, Picasso.LoadedFrom.NETWORK);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(4);
+    prefetcher.setVisiblePositions(0, 2);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(4);
+    prefetcher.cancel();
+    verify(dispatcher, never()).dispatchCancel(finished);
+  }
+
+  @Test public void doesNotFetchPastTheEnd() {
+    Prefetcher prefetcher = new Prefetcher(picasso, requests, 4);
+    prefetcher.setVisiblePositions(6, 8);
+    assertThat(prefetcher.fetches.keySet()).containsExactly(9);
+  }
+}
@@ -17,6 +17,7 @@ package com.squareup.picasso;
 
 import android.R;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.widget.ImageView;
@@ -35,14 +36,15 @@ import org.robolectric.annotation.Config;
 import static com.squareup.picasso.Picasso.LoadedFrom.MEMORY;
 import static com.squareup.picasso.TestUtils.BITMAP_1;
 import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.TestUtils.URI_2;
 import static com.squareup.picasso.TestUtils.URI_KEY_1;
+import static com.squareup.picasso.TestUtils.URI_KEY_2;
 import static com.squareup.picasso.TestUtils.mockFitImageViewTarget;
 import static com.squareup.picasso.TestUtils.mockImageViewTarget;
 import static com.squareup.picasso.TestUtils.mockTarget;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.fail;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -108,6 +110,19 @@ public class RequestBuilderTest {
     assertThat(requestCaptor.getValue()).isInstanceOf(FetchRequest.class);
   }
 
+  @Test public void fetchDefaultsToLowPriority() throws Exception {
+    new RequestBuilder(picasso, URI_1, 0).fetch();
+    verify(picasso).enqueueAndSubmit(requestCaptor.capture());
+    assertThat(requestCaptor.getValue().getPriority()).isEqualTo(Picasso.Priority.LOW);
+    assertThat(requestCaptor.getValue().getKey()).isEqualTo(URI_KEY_1);
+  }
+
+  @Test public void intoTargetUsesRequestedPriority() throws Exception {
+    new RequestBuilder(picasso, URI_1, 0).priority(Picasso.Priority.HIGH).into(mockTarget());
+    verify(picasso).enqueueAndSubmit(requestCaptor.capture());
+    assertThat(requestCaptor.getValue().getPriority()).isEqualTo(Picasso.Priority.HIGH);
+  }
+
   @Test
   public void intoTargetWithNullThrows() throws Exception {
     try {
@@ -164,15 +179,15 @@ public class RequestBuilderTest {
     ImageView target = mockImageViewTarget();
     new RequestBuilder(picasso, null, 0).into(target);
     verify(picasso).cancelRequest(target);
-    verify(picasso, never()).quickMemoryCacheCheck(anyString());
+    verify(picasso, never()).quickMemoryCacheCheck(any(RequestKey.class));
     verify(picasso, never()).enqueueAndSubmit(any(Request.class));
   }
 
   @Test
   public void intoImageViewWithQuickMemoryCacheCheckDoesNotSubmit() throws Exception {
     Picasso picasso =
-        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null,
-            mock(Stats.class), true));
+        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, null,
+            null, null, null, null, mock(Stats.class), false, false, true));
     when(picasso.quickMemoryCacheCheck(URI_KEY_1)).thenReturn(BITMAP_1);
     ImageView target = mockImageViewTarget();
     new RequestBuilder(picasso, URI_1, 0).into(target);
@@ -184,8 +199,8 @@ public class RequestBuilderTest {
   @Test
   public void intoImageViewSetsPlaceholderDrawable() throws Exception {
     Picasso picasso =
-        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null,
-            mock(Stats.class), true));
+        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, null,
+            null, null, null, null, mock(Stats.class), false, false, true));
     ImageView target = mockImageViewTarget();
     Drawable placeHolderDrawable = mock(Drawable.class);
     new RequestBuilder(picasso, URI_1, 0).placeholder(placeHolderDrawable).into(target);
@@ -197,8 +212,8 @@ public class RequestBuilderTest {
   @Test
   public void intoImageViewSetsPlaceholderWithResourceId() throws Exception {
     Picasso picasso =
-        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null,
-            mock(Stats.class), true));
+        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, null,
+            null, null, null, null, mock(Stats.class), false, false, true));
     ImageView target = mockImageViewTarget();
     new RequestBuilder(picasso, URI_1, 0).placeholder(R.drawable.picture_frame).into(target);
     verify(target).setImageResource(R.drawable.picture_frame);
@@ -243,6 +258,54 @@ public class RequestBuilderTest {
     assertThat(requestCaptor.getValue()).isInstanceOf(ImageViewRequest.class);
   }
 
+  @Test
+  public void intoImageViewWithCachedThumbnailShowsThumbnail() throws Exception {
+    Picasso picasso =
+        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, null,
+            null, null, null, null, mock(Stats.class), false, false, true));
+    when(picasso.quickMemoryCacheCheck(URI_KEY_2)).thenReturn(BITMAP_1);
+    ImageView target = mockImageViewTarget();
+    new RequestBuilder(picasso, URI_1, 0).thumbnail(new RequestBuilder(picasso, URI_2, 0))
+        .into(target);
+    verify(target).setImageDrawable(any(PicassoDrawable.class));
+    verify(picasso).enqueueAndSubmit(requestCaptor.capture());
+    assertThat(((ImageViewRequest) requestCaptor.getValue()).thumbnail).isNull();
+    verify(picasso, never()).submit(any(Request.class));
+  }
+
+  @Test
+  public void intoImageViewWithThumbnailNotInCacheSubmitsThumbnailRequest() throws Exception {
+    Picasso picasso =
+        spy(new Picasso(Robolectric.application, mock(Dispatcher.class), Cache.NONE, null, null,
+            null, null, null, null, mock(Stats.class), false, false, true));
+    ImageView target = mockImageViewTarget();
+    new RequestBuilder(picasso, URI_1, 0).thumbnail(new RequestBuilder(picasso, URI_2, 0))
+        .into(target);
+    verify(picasso).enqueueAndSubmit(requestCaptor.capture());
+    ImageViewRequest request = (ImageViewRequest) requestCaptor.getValue();
+    verify(picasso).submit(request.thumbnail);
+    assertThat(request.thumbnail.getKey()).isEqualTo(URI_KEY_2);
+    assertThat(request.thumbnail.getPriority()).isEqualTo(Picasso.Priority.HIGH);
+  }
+
+  @Test public void invalidThumbnail() throws Exception {
+    try {
+      new RequestBuilder().thumbnail(null);
+      fail("Null thumbnail should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().thumbnail(new RequestBuilder().fit());
+      fail("Thumbnail with fit should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().thumbnail(new RequestBuilder()).thumbnail(new RequestBuilder());
+      fail("Two thumbnails should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
   @Test public void invalidPlaceholderImage() throws Exception {
     try {
       new RequestBuilder().placeholder(0);
@@ -297,6 +360,50 @@ public class RequestBuilderTest {
     }
   }
 
+  @Test public void invalidPriority() throws Exception {
+    try {
+      new RequestBuilder().priority(null);
+      fail("Null priority should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().priority(Picasso.Priority.LOW).priority(Picasso.Priority.HIGH);
+      fail("Two priorities should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void invalidRegion() throws Exception {
+    try {
+      new RequestBuilder().region(null);
+      fail("Null region should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().region(new Rect(10, 10, 10, 20));
+      fail("Empty region should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().region(new Rect(0, 0, 10, 10)).region(new Rect(0, 0, 20, 20));
+      fail("Two regions should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test public void invalidConfig() throws Exception {
+    try {
+      new RequestBuilder().config(null);
+      fail("Null config should throw exception.");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RequestBuilder().config(Bitmap.Config.RGB_565).config(Bitmap.Config.ARGB_8888);
+      fail("Two configs should throw exception.");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
   @Test(expected = IllegalStateException.class)
   public void resizeCanOnlyBeCalledOnce() throws Exception {
     new RequestBuilder().resize(10, 10).resize(5, 5);
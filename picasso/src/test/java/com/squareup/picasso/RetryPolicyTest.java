@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso;
+
+import android.net.Uri;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.squareup.picasso.RetryPolicy.BASE_DELAY;
+import static com.squareup.picasso.RetryPolicy.MAX_DELAY;
+import static com.squareup.picasso.TestUtils.URI_1;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RetryPolicyTest {
+  private static final Uri OTHER_HOST = Uri.parse("http://example.org/1.png");
+
+  @Test public void delayDoublesWithConsecutiveFailuresOfHost() {
+    RetryPolicy policy = new RetryPolicy(new Random(0));
+    int expected = BASE_DELAY;
+    for (int i = 0; i < 4; i++) {
+      assertThat(policy.failed(URI_1)).isGreaterThanOrEqualTo(expected / 2)
+          .isLessThanOrEqualTo(expected);
+      expected *= 2;
+    }
+  }
+
+  @Test public void delayIsCapped() {
+    RetryPolicy policy = new RetryPolicy(new Random(0));
+    for (int i = 0; i < 40; i++) {
+      assertThat(policy.failed(URI_1)).isLessThanOrEqualTo(MAX_DELAY);
+    }
+  }
+
+  @Test public void hostsAreTrackedSeparately() {
+    RetryPolicy policy = new RetryPolicy(new Random(0));
+    for (int i = 0; i < 5; i++) {
+      policy.failed(URI_1);
+    }
+    assertThat(policy.failed(OTHER_HOST)).isLessThanOrEqualTo(BASE_DELAY);
+  }
+
+  @Test public void successResetsDelayOfHost() {
+    RetryPolicy policy = new RetryPolicy(new Random(0));
+    for (int i = 0; i < 5; i++) {
+      policy.failed(URI_1);
+    }
+    policy.succeeded(URI_1);
+    assertThat(policy.hostFailures).isEmpty();
+    assertThat(policy.failed(URI_1)).isLessThanOrEqualTo(BASE_DELAY);
+  }
+
+  @Test public void retriesAreJittered() {
+    RetryPolicy policy = new RetryPolicy(new Random(0));
+    int first = policy.failed(URI_1);
+    policy.succeeded(URI_1);
+    boolean varied = false;
+    for (int i = 0; i < 10 && !varied; i++) {
+      varied = policy.failed(URI_1) != first;
+      policy.succeeded(URI_1);
+    }
+    assertThat(varied).isTrue();
+  }
+}
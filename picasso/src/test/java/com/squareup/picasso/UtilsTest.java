@@ -15,6 +15,8 @@
  */
 package com.squareup.picasso;
 
+import android.graphics.Bitmap;
+import android.graphics.Rect;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
@@ -22,7 +24,13 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
 import static com.squareup.picasso.TestUtils.URI_1;
+import static com.squareup.picasso.Utils.calculateTrimmedCacheSize;
 import static com.squareup.picasso.Utils.createKey;
 import static com.squareup.picasso.Utils.parseResponseSourceHeader;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -31,26 +39,28 @@ import static org.fest.assertions.api.Assertions.assertThat;
 public class UtilsTest {
 
   @Test public void matchingRequestsHaveSameKey() {
-    String key1 = createKey(URI_1, 0, null, null);
-    String key2 = createKey(URI_1, 0, null, null);
+    RequestKey key1 = createKey(URI_1, 0, null, null);
+    RequestKey key2 = createKey(URI_1, 0, null, null);
     assertThat(key1).isEqualTo(key2);
+    assertThat(key1.hash()).isEqualTo(key2.hash());
+    assertThat(key1.hashCode()).isEqualTo(key2.hashCode());
 
     List<Transformation> t1 = new ArrayList<Transformation>();
     t1.add(new TestTransformation("foo", null));
-    String single1 = createKey(URI_1, 0, null, t1);
+    RequestKey single1 = createKey(URI_1, 0, null, t1);
     List<Transformation> t2 = new ArrayList<Transformation>();
     t2.add(new TestTransformation("foo", null));
-    String single2 = createKey(URI_1, 0, null, t2);
+    RequestKey single2 = createKey(URI_1, 0, null, t2);
     assertThat(single1).isEqualTo(single2);
 
     List<Transformation> t3 = new ArrayList<Transformation>();
     t3.add(new TestTransformation("foo", null));
     t3.add(new TestTransformation("bar", null));
-    String double1 = createKey(URI_1, 0, null, t3);
+    RequestKey double1 = createKey(URI_1, 0, null, t3);
     List<Transformation> t4 = new ArrayList<Transformation>();
     t4.add(new TestTransformation("foo", null));
     t4.add(new TestTransformation("bar", null));
-    String double2 = createKey(URI_1, 0, null, t4);
+    RequestKey double2 = createKey(URI_1, 0, null, t4);
     assertThat(double1).isEqualTo(double2);
 
     List<Transformation> t5 = new ArrayList<Transformation>();
@@ -60,11 +70,77 @@ public class UtilsTest {
     List<Transformation> t6 = new ArrayList<Transformation>();
     t6.add(new TestTransformation("bar", null));
     t6.add(new TestTransformation("foo", null));
-    String order1 = createKey(URI_1, 0, null, t5);
-    String order2 = createKey(URI_1, 0, null, t6);
+    RequestKey order1 = createKey(URI_1, 0, null, t5);
+    RequestKey order2 = createKey(URI_1, 0, null, t6);
     assertThat(order1).isNotEqualTo(order2);
   }
 
+  @Test public void differentConfigsHaveDifferentKeys() {
+    PicassoBitmapOptions rgb565 = new PicassoBitmapOptions();
+    rgb565.config = Bitmap.Config.RGB_565;
+    PicassoBitmapOptions lowMemory = new PicassoBitmapOptions();
+    lowMemory.preferLowMemoryConfig = true;
+    RequestKey plain = createKey(URI_1, 0, null, null);
+    RequestKey explicit = createKey(URI_1, 0, rgb565, null);
+    RequestKey preferred = createKey(URI_1, 0, lowMemory, null);
+    assertThat(plain).isNotEqualTo(explicit);
+    assertThat(plain).isNotEqualTo(preferred);
+    assertThat(explicit).isNotEqualTo(preferred);
+    assertThat(explicit.toString()).isEqualTo(URI_1 + "\nconfig:RGB_565\n");
+    assertThat(preferred.toString()).isEqualTo(URI_1 + "\npreferLowMemoryConfig\n");
+  }
+
+  @Test public void differentRegionsHaveDifferentKeys() {
+    PicassoBitmapOptions options1 = new PicassoBitmapOptions();
+    options1.region = new Rect(0, 0, 256, 256);
+    PicassoBitmapOptions options2 = new PicassoBitmapOptions();
+    options2.region = new Rect(256, 0, 512, 256);
+    RequestKey region1 = createKey(URI_1, 0, options1, null);
+    RequestKey region2 = createKey(URI_1, 0, options2, null);
+    assertThat(region1).isNotEqualTo(region2);
+    assertThat(region1).isNotEqualTo(createKey(URI_1, 0, null, null));
+  }
+
+  @Test public void keyStringListsComponents() {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetRotation = 90;
+    options.targetWidth = 100;
+    options.targetHeight = 50;
+    options.centerCrop = true;
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new TestTransformation("foo", null));
+    RequestKey key = createKey(URI_1, 0, options, transformations);
+    assertThat(key.toString()).isEqualTo(
+        URI_1 + "\nrotation:90.0\nresize:100x50\ncenterCrop\nfoo\n");
+    assertThat(createKey(null, 7, null, null).toString()).isEqualTo("7\n");
+  }
+
+  @Test public void prefixKeysDropTrailingTransformations() {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 100;
+    options.targetHeight = 50;
+    List<Transformation> transformations = new ArrayList<Transformation>();
+    transformations.add(new TestTransformation("foo", null));
+    transformations.add(new TestTransformation("bar", null));
+    RequestKey key = createKey(URI_1, 0, options, transformations);
+    assertThat(key.prefix(2)).isSameAs(key);
+    assertThat(key.prefix(1))
+        .isEqualTo(createKey(URI_1, 0, options, transformations.subList(0, 1)));
+    assertThat(key.prefix(0)).isEqualTo(createKey(URI_1, 0, options, null));
+    assertThat(key.prefix(0).toString()).isEqualTo(URI_1 + "\nresize:100x50\n");
+  }
+
+  @Test public void changedOptionsDoNotChangeKey() {
+    PicassoBitmapOptions options = new PicassoBitmapOptions();
+    options.targetWidth = 100;
+    options.targetHeight = 50;
+    RequestKey key = createKey(URI_1, 0, options, null);
+    RequestKey same = createKey(URI_1, 0, options, null);
+    options.targetWidth = 200;
+    assertThat(key).isEqualTo(same);
+    assertThat(key).isNotEqualTo(createKey(URI_1, 0, options, null));
+  }
+
   @Test public void loadedFromCache() {
     assertThat(parseResponseSourceHeader(null)).isFalse();
     assertThat(parseResponseSourceHeader("CACHE 200")).isTrue();
@@ -75,4 +151,13 @@ public class UtilsTest {
     assertThat(parseResponseSourceHeader("")).isFalse();
     assertThat(parseResponseSourceHeader("HELLO WORLD")).isFalse();
   }
+
+  @Test public void trimmedCacheSizeFollowsTrimLevel() {
+    assertThat(calculateTrimmedCacheSize(100, 0)).isEqualTo(100);
+    assertThat(calculateTrimmedCacheSize(100, TRIM_MEMORY_RUNNING_MODERATE)).isEqualTo(75);
+    assertThat(calculateTrimmedCacheSize(100, TRIM_MEMORY_RUNNING_CRITICAL)).isEqualTo(25);
+    assertThat(calculateTrimmedCacheSize(100, TRIM_MEMORY_UI_HIDDEN)).isEqualTo(50);
+    assertThat(calculateTrimmedCacheSize(100, TRIM_MEMORY_BACKGROUND)).isEqualTo(50);
+    assertThat(calculateTrimmedCacheSize(100, TRIM_MEMORY_COMPLETE)).isZero();
+  }
 }